@@ -1,6 +1,8 @@
 package com.example.games.blocks;
 
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
+import android.view.Choreographer;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
@@ -15,17 +17,73 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.games.blocks.model.Game;
+import com.example.games.blocks.model.GameHistory;
+import com.example.games.blocks.model.GameMetrics;
+import com.example.games.blocks.model.GameRecord;
+import com.example.games.blocks.model.GameStats;
+import com.example.games.blocks.model.TextChars;
+import com.example.games.blocks.view.SurfaceGameRenderer;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.text.DecimalFormatSymbols;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Main Game Activity.
  */
 public class MainActivity extends AppCompatActivity {
 
+    // Saved state of the game in progress, restored after the app process is killed.
+    private static final String KEY_GAME_STATE = "game_state";
+    // A state too big for the Bundle, e.g. of a long game on a big field, goes to this file of
+    // the app files instead, and the Bundle only says so.
+    private static final String KEY_GAME_STATE_IN_FILE = "game_state_in_file";
+    private static final String GAME_STATE_FILE = "game_state";
+    // The whole Bundle has to fit in a binder transaction of 1 MB, shared with the views.
+    private static final int MAX_BUNDLE_STATE_BYTES = 64 * 1024;
+
+    // Longest number shown in the stats, an int with grouping separators.
+    private static final int STATS_CHARS = 16;
+
+    // Directory of the game history, in the app files.
+    private static final String HISTORY_DIRECTORY = "history";
+
+    // The history of finished games is read and written on one background thread, shared by
+    // all instances of the activity, so that they never write it at the same time.
+    private static final ExecutorService historyExecutor = Executors.newSingleThreadExecutor();
+    // Opened on the history thread, null until then or if it cannot be read.
+    private static GameHistory history;
+
     private Game game;
     private Button pauseGame;
     private SwitchMaterial showNextFigureSwitch;
 
+    // The stats are shown at most once per frame, however often they change.
+    private Choreographer choreographer;
+    private final AtomicBoolean isStatsUpdatePosted = new AtomicBoolean();
+    private final Choreographer.FrameCallback statsUpdate = frameTimeNanos -> showStats();
+    private final GameStats shownStats = new GameStats();
+    private char groupingSeparator;
+    private TextView scoreTextView;
+    private TextView figuresCountTextView;
+    private TextView linesCountTextView;
+    private TextView levelNumberTextView;
+
+    // A TextView keeps the chars it is given, so each one needs its own buffer.
+    private final char[] scoreChars = new char[STATS_CHARS];
+    private final char[] figuresCountChars = new char[STATS_CHARS];
+    private final char[] linesCountChars = new char[STATS_CHARS];
+    private final char[] levelNumberChars = new char[STATS_CHARS];
+    private final char[] bestScoreChars = new char[STATS_CHARS];
+    private TextView bestScoreTextView;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -37,8 +95,18 @@ public class MainActivity extends AppCompatActivity {
         SurfaceHolder showNextSurfaceHolder = showNextSurfaceView.getHolder();
 
         game = new Game();
+        SurfaceGameRenderer renderer = new SurfaceGameRenderer();
+        game.setRenderer(renderer);
+
+        // Debuggable builds measure latencies, show them over the game field, and print them
+        // with 'adb shell dumpsys activity com.example.games.blocks/.MainActivity'.
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            GameMetrics metrics = new GameMetrics();
+            game.setMetrics(metrics);
+            renderer.setMetricsOverlay(metrics);
+        }
 
-        TextView levelNumberTextView = findViewById(R.id.level_number);
+        levelNumberTextView = findViewById(R.id.level_number);
 
         Spinner beginLevelSpinner = findViewById(R.id.begin_level_spinner);
         ArrayAdapter<CharSequence> adapter = ArrayAdapter.createFromResource(this,
@@ -57,12 +125,8 @@ public class MainActivity extends AppCompatActivity {
 
         Button newGame = findViewById(R.id.button_new_game);
         newGame.setOnClickListener(listener -> {
-            showNextFigureSwitch.setEnabled(false);
-            beginLevelSpinner.setVisibility(View.GONE);
-            levelNumberTextView.setVisibility(View.VISIBLE);
+            showInGameControls(beginLevelSpinner, levelNumberTextView, newGame);
             game.newGame();
-            newGame.setEnabled(false);
-            pauseGame.setEnabled(true);
             setGameStateText(getResources().getString(R.string.game_state_play));
         });
 
@@ -82,7 +146,28 @@ public class MainActivity extends AppCompatActivity {
         showNextFigureSwitch.setOnCheckedChangeListener((buttonView, isChecked) ->
                 game.setShowNextFigure(isChecked));
 
-        game.setOnGameOverListener(() ->
+        SwitchMaterial hintSwitch = findViewById(R.id.hint_switch);
+        game.setShowHint(hintSwitch.isChecked());
+        hintSwitch.setOnCheckedChangeListener((buttonView, isChecked) ->
+                game.setShowHint(isChecked));
+
+        SwitchMaterial ghostSwitch = findViewById(R.id.ghost_switch);
+        game.setShowGhost(ghostSwitch.isChecked());
+        ghostSwitch.setOnCheckedChangeListener((buttonView, isChecked) ->
+                game.setShowGhost(isChecked));
+
+        SwitchMaterial autoPlaySwitch = findViewById(R.id.autoplay_switch);
+        game.setAutoPlay(autoPlaySwitch.isChecked());
+        autoPlaySwitch.setOnCheckedChangeListener((buttonView, isChecked) ->
+                game.setAutoPlay(isChecked));
+
+        File historyDirectory = new File(getFilesDir(), HISTORY_DIRECTORY);
+        bestScoreTextView = findViewById(R.id.best_score);
+        historyExecutor.execute(() -> updateHistory(historyDirectory, null));
+
+        game.setOnGameOverListener(() -> {
+            GameRecord record = game.getGameRecord();
+            historyExecutor.execute(() -> updateHistory(historyDirectory, record));
             MainActivity.this.runOnUiThread(() -> {
                 setGameStateText(getResources().getString(R.string.game_state_game_over));
 
@@ -94,58 +179,54 @@ public class MainActivity extends AppCompatActivity {
 
                 newGame.setEnabled(true);
                 newGame.requestFocus();
-            })
-        );
+            });
+        });
 
-        TextView scoreTextView = findViewById(R.id.score);
-        TextView figuresCountTextView = findViewById(R.id.figures_count);
-        TextView linesCountTextView = findViewById(R.id.lines_count);
-        game.setOnScoreChangedListener((newScore, linesCount, figuresCount) ->
-            MainActivity.this.runOnUiThread(() -> {
-                scoreTextView.setText(String.format("%,d", newScore));
-                figuresCountTextView.setText(String.format("%,d", figuresCount));
-                linesCountTextView.setText(String.format("%,d", linesCount));
-            })
-        );
-
-        game.setOnLevelChangedListener((newLevel) ->
-            MainActivity.this.runOnUiThread(() ->
-                levelNumberTextView.setText(String.format("%,d", newLevel))
-            )
-        );
+        scoreTextView = findViewById(R.id.score);
+        figuresCountTextView = findViewById(R.id.figures_count);
+        linesCountTextView = findViewById(R.id.lines_count);
+        choreographer = Choreographer.getInstance();
+        groupingSeparator = DecimalFormatSymbols.getInstance().getGroupingSeparator();
+        game.setOnScoreChangedListener((newScore, linesCount, figuresCount) -> postStatsUpdate());
+        game.setOnLevelChangedListener((newLevel) -> postStatsUpdate());
 
         ImageButton buttonLeft = findViewById(R.id.button_left);
-        buttonLeft.setOnClickListener(listener -> game.left());
+        buttonLeft.setOnClickListener(listener -> game.postCommand(Game.CMD_LEFT));
 
         ImageButton buttonRotate = findViewById(R.id.button_rotate);
-        buttonRotate.setOnClickListener(listener -> game.rotate());
+        buttonRotate.setOnClickListener(listener -> game.postCommand(Game.CMD_ROTATE));
 
         ImageButton buttonRight = findViewById(R.id.button_right);
-        buttonRight.setOnClickListener(listener -> game.right());
+        buttonRight.setOnClickListener(listener -> game.postCommand(Game.CMD_RIGHT));
 
         ImageButton buttonDrop = findViewById(R.id.button_drop);
-        buttonDrop.setOnClickListener(listener -> game.drop());
+        buttonDrop.setOnClickListener(listener -> game.postCommand(Game.CMD_DROP));
 
         gameSurfaceHolder.addCallback(new SurfaceHolder.Callback() {
             @Override
             public void surfaceCreated(@NonNull SurfaceHolder holder) {
-                game.setGameSurfaceHolder(holder);
+                renderer.setGameSurfaceHolder(holder);
                 game.repaintField();
             }
 
             @Override
             public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+                renderer.setGameSurfaceSize(width, height);
+                game.repaintField();
             }
 
             @Override
             public void surfaceDestroyed(SurfaceHolder holder) {
+                // Returns after the render thread has stopped using the surface.
+                renderer.setGameSurfaceHolder(null);
             }
         });
 
         showNextSurfaceHolder.addCallback(new SurfaceHolder.Callback() {
             @Override
             public void surfaceCreated(@NonNull SurfaceHolder holder) {
-                game.setShowNextSurfaceHolder(holder);
+                renderer.setShowNextSurfaceHolder(holder);
+                game.repaintField();
             }
 
             @Override
@@ -154,15 +235,163 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void surfaceDestroyed(SurfaceHolder holder) {
+                renderer.setShowNextSurfaceHolder(null);
             }
         });
+
+        byte[] gameState = savedInstanceState != null
+                ? readGameState(savedInstanceState)
+                : null;
+        if (gameState != null) {
+            try {
+                game.restoreState(gameState);
+                showInGameControls(beginLevelSpinner, levelNumberTextView, newGame);
+                showPaused();
+            } catch (IllegalArgumentException e) {
+                // A state of another version of the app, start over.
+            }
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        byte[] gameState = game.saveState();
+        if (gameState == null) {
+            return;
+        }
+        if (gameState.length <= MAX_BUNDLE_STATE_BYTES) {
+            outState.putByteArray(KEY_GAME_STATE, gameState);
+            return;
+        }
+        try {
+            Files.write(new File(getFilesDir(), GAME_STATE_FILE).toPath(), gameState);
+            outState.putBoolean(KEY_GAME_STATE_IN_FILE, true);
+        } catch (IOException e) {
+            // Out of space, the game is lost as if the state was never saved.
+        }
+    }
+
+    /**
+     * Returns the game state saved by {@link #onSaveInstanceState(Bundle)}, or null if there
+     * is none or its file cannot be read.
+     */
+    private byte[] readGameState(Bundle savedInstanceState) {
+        if (!savedInstanceState.getBoolean(KEY_GAME_STATE_IN_FILE)) {
+            return savedInstanceState.getByteArray(KEY_GAME_STATE);
+        }
+        File file = new File(getFilesDir(), GAME_STATE_FILE);
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            return null;
+        } finally {
+            // Read once, the next save writes it again if it is still too big.
+            file.delete();
+        }
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        // Pause the game if activity is paused.
+        // Pause the game if activity is paused, this also stops the Game loop until the
+        // player resumes the game.
         game.pause();
+        showPaused();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // The next activity makes a game of its own, so the threads of this one have to end.
+        choreographer.removeFrameCallback(statsUpdate);
+        game.shutdown();
+    }
+
+    @Override
+    public void dump(@NonNull String prefix, FileDescriptor fd, @NonNull PrintWriter writer,
+                     String[] args) {
+        super.dump(prefix, fd, writer, args);
+        GameMetrics metrics = game.getMetrics();
+        if (metrics != null) {
+            writer.print(prefix);
+            writer.println("Game latency metrics:");
+            writer.print(metrics.dump());
+        }
+    }
+
+    /**
+     * Shows the stats on the next frame, unless that is already requested. Called on the Game
+     * loop thread, without allocating.
+     */
+    private void postStatsUpdate() {
+        if (isStatsUpdatePosted.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(statsUpdate);
+        }
+    }
+
+    private void showStats() {
+        isStatsUpdatePosted.set(false);
+        if (game.getStatsVersion() == shownStats.version()) {
+            return;
+        }
+        int score = shownStats.score();
+        int figuresCount = shownStats.figuresCount();
+        int lines = shownStats.lines();
+        int level = shownStats.level();
+        boolean isFirst = shownStats.version() < 0;
+        game.copyStats(shownStats);
+        if (isFirst || shownStats.score() != score) {
+            setNumber(scoreTextView, scoreChars, shownStats.score());
+        }
+        if (isFirst || shownStats.figuresCount() != figuresCount) {
+            setNumber(figuresCountTextView, figuresCountChars, shownStats.figuresCount());
+        }
+        if (isFirst || shownStats.lines() != lines) {
+            setNumber(linesCountTextView, linesCountChars, shownStats.lines());
+        }
+        if (isFirst || shownStats.level() != level) {
+            setNumber(levelNumberTextView, levelNumberChars, shownStats.level());
+        }
+    }
+
+    private void setNumber(TextView textView, char[] chars, int number) {
+        int length = TextChars.appendGrouped(chars, 0, number, groupingSeparator);
+        textView.setText(chars, 0, length);
+    }
+
+    /**
+     * Opens the history if it is not open yet, adds a finished game to it if there is one,
+     * and shows the best score. Runs on the history thread.
+     */
+    private void updateHistory(File historyDirectory, GameRecord record) {
+        try {
+            if (history == null) {
+                history = GameHistory.open(historyDirectory);
+            }
+            if (record != null) {
+                history.add(record);
+            }
+        } catch (IOException e) {
+            // The game goes on without the history.
+            if (history == null) {
+                return;
+            }
+        }
+        int bestScore = history.bestScore();
+        runOnUiThread(() -> setNumber(bestScoreTextView, bestScoreChars, bestScore));
+    }
+
+    private void showInGameControls(Spinner beginLevelSpinner, TextView levelNumberTextView,
+                                    Button newGame) {
+        showNextFigureSwitch.setEnabled(false);
+        beginLevelSpinner.setVisibility(View.GONE);
+        levelNumberTextView.setVisibility(View.VISIBLE);
+        newGame.setEnabled(false);
+        pauseGame.setEnabled(true);
+    }
+
+    private void showPaused() {
         setGameStateText(getResources().getString(R.string.game_state_paused));
         pauseGame.setText(R.string.button_unpause_game);
     }
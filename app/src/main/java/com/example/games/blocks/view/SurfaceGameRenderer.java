@@ -0,0 +1,643 @@
+package com.example.games.blocks.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.SurfaceHolder;
+
+import androidx.annotation.ColorInt;
+
+import com.example.games.blocks.model.Figure;
+import com.example.games.blocks.model.FrameSnapshot;
+import com.example.games.blocks.model.GameMetrics;
+import com.example.games.blocks.model.GameRenderer;
+
+import static com.example.games.blocks.model.Game.CELL_IS_EMPTY;
+
+/**
+ * Paints the game on the game field and the 'show next' surfaces.
+ *
+ * <p> The game field is repainted incrementally: only the cells of the current figure in its
+ * old and new positions, and the rows of settled blocks that changed, are pushed to the
+ * surface with a partial {@link SurfaceHolder#lockCanvas(Rect)}. The whole field is repainted
+ * when the surface is (re)created or changed, or when a new game starts.
+ *
+ * <p> Settled blocks are kept in an off-screen bitmap, which is repainted only for the rows
+ * that changed after a figure is fixed or lines are reduced. A frame is then one bitmap blit
+ * plus the rectangles of the current figure and the outlines of the hint and the ghost, using
+ * preallocated Paint objects.
+ *
+ * <p> A field too big for the surface at one pixel per cell is shown through a viewport that
+ * follows the current figure: when the figure leaves it, the viewport is centered on the
+ * figure's columns and put a few rows above it, but never below the bottom of the field, so
+ * the figure falls through it onto the bottom rows. Each move of the viewport is a full
+ * repaint.
+ *
+ * <p> Frames are painted on the Game render thread, from snapshots of the game state.
+ */
+public class SurfaceGameRenderer implements GameRenderer {
+
+    // Size of the game field cells in pixels until the size of the surface is known.
+    static final int DEFAULT_CELL_PIXELS = 66;
+
+    @ColorInt
+    static final int FIELD_COLOR = Color.BLACK;
+
+    // Width of the hint and ghost outlines is the cell size divided by this, at least one pixel.
+    static final int HINT_STROKE_DIVISOR = 16;
+
+    @ColorInt
+    static final int GHOST_COLOR = Color.GRAY;
+
+    @ColorInt
+    static final int SHOW_NEXT_SURFACE_BACKGROUND_COLOR = Color.LTGRAY;
+
+    // Debug overlay of latency metrics, at the top of the game field.
+    static final int OVERLAY_TEXT_PIXELS = 26;
+    static final int OVERLAY_LINE_PIXELS = 32;
+    @ColorInt
+    static final int OVERLAY_TEXT_COLOR = Color.WHITE;
+    @ColorInt
+    static final int OVERLAY_BACKGROUND_COLOR = 0xA0000000;
+
+    // Color of the figures, indexed by figure type.
+    @ColorInt
+    static final int[] figuresColor = {
+            FIELD_COLOR, Color.RED, Color.MAGENTA, Color.WHITE,
+            Color.BLUE, Color.CYAN, Color.GREEN, Color.YELLOW,
+            FIELD_COLOR};
+
+    // Paint for each of figuresColor.
+    private final Paint[] figurePaints = new Paint[figuresColor.length];
+    private final Paint fieldPaint = new Paint();
+    private final Paint showNextBackgroundPaint = new Paint();
+    private final Paint hintPaint = new Paint();
+    private final Paint ghostPaint = new Paint();
+    private final Paint overlayTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint overlayBackgroundPaint = new Paint();
+
+    // Metrics shown in the debug overlay, null if it is off.
+    private GameMetrics overlayMetrics;
+    private final char[] overlayLine = new char[GameMetrics.MAX_LINE_LENGTH];
+
+    private SurfaceHolder gameSurfaceHolder;
+    private SurfaceHolder showNextSurfaceHolder;
+
+    // Size of the game surface in pixels, 0 if it is not known yet.
+    private int surfaceWidth;
+    private int surfaceHeight;
+
+    // Size of the game field cells in pixels, the largest that fits the field into the surface,
+    // but at least one pixel. The columns and rows of the field that do not fit are outside
+    // the viewport.
+    private int cellPixels = DEFAULT_CELL_PIXELS;
+    private int hintStrokePixels = DEFAULT_CELL_PIXELS / HINT_STROKE_DIVISOR;
+    private int visibleColumns;
+    private int visibleRows;
+    // Cell of the game field shown at the left top of the surface.
+    private int firstColumn = 1;
+    private int firstRow = 1;
+
+    // Region of the game surface to repaint in the current frame, in pixels.
+    private final Rect dirtyRect = new Rect();
+
+    // Set when the content of the game surface is unknown, e.g. after it was (re)created.
+    private boolean isFullRepaintNeeded = true;
+
+    // Settled blocks of the game field, painted off-screen.
+    private Bitmap stackBitmap;
+    private Canvas stackCanvas;
+
+    // Game field as it is currently painted in stackBitmap, and its version at that time.
+    private int shownFieldGeneration = -1;
+    private int shownFieldVersion;
+    private byte[] shownCells;
+
+    // Cells of the current figure as it is currently shown on the surface.
+    private final int[] shownFigureX = new int[Figure.FIGURE_SIZE];
+    private final int[] shownFigureY = new int[Figure.FIGURE_SIZE];
+    private boolean isFigureShown;
+
+    // Cells of the hint as it is currently shown on the surface, 0 type if there is none.
+    private final int[] shownHintX = new int[Figure.FIGURE_SIZE];
+    private final int[] shownHintY = new int[Figure.FIGURE_SIZE];
+    private int shownHintType;
+
+    // Cells of the ghost as it is currently shown on the surface, 0 type if there is none.
+    private final int[] shownGhostX = new int[Figure.FIGURE_SIZE];
+    private final int[] shownGhostY = new int[Figure.FIGURE_SIZE];
+    private int shownGhostType;
+
+    // 'Next' figure type as it is currently shown, -1 if the surface content is unknown.
+    private int shownNextFigureType = -1;
+
+    public SurfaceGameRenderer() {
+        for (int i = 0; i < figuresColor.length; i++) {
+            figurePaints[i] = new Paint();
+            figurePaints[i].setColor(figuresColor[i]);
+        }
+        fieldPaint.setColor(FIELD_COLOR);
+        showNextBackgroundPaint.setColor(SHOW_NEXT_SURFACE_BACKGROUND_COLOR);
+        hintPaint.setStyle(Paint.Style.STROKE);
+        hintPaint.setStrokeWidth(hintStrokePixels);
+        ghostPaint.setColor(GHOST_COLOR);
+        ghostPaint.setStyle(Paint.Style.STROKE);
+        ghostPaint.setStrokeWidth(hintStrokePixels);
+        overlayTextPaint.setColor(OVERLAY_TEXT_COLOR);
+        overlayTextPaint.setTextSize(OVERLAY_TEXT_PIXELS);
+        overlayBackgroundPaint.setColor(OVERLAY_BACKGROUND_COLOR);
+    }
+
+    /**
+     * Shows latency metrics over the top of the game field, updated with every frame.
+     *
+     * @param metrics the metrics, null to hide the overlay.
+     */
+    public synchronized void setMetricsOverlay(GameMetrics metrics) {
+        this.overlayMetrics = metrics;
+        isFullRepaintNeeded = true;
+    }
+
+    /**
+     * Sets the game field surface holder. Waits for the frame being painted, so after setting
+     * null, the previous surface is no longer used.
+     */
+    public synchronized void setGameSurfaceHolder(SurfaceHolder gameSurfaceHolder) {
+        this.gameSurfaceHolder = gameSurfaceHolder;
+        isFullRepaintNeeded = true;
+    }
+
+    /**
+     * Sets the size of the game field surface, and makes the next repaint of the game field a
+     * full one, e.g. after the surface has changed.
+     */
+    public synchronized void setGameSurfaceSize(int width, int height) {
+        surfaceWidth = width;
+        surfaceHeight = height;
+        isFullRepaintNeeded = true;
+    }
+
+    /**
+     * Sets the 'show next' surface holder. Waits for the frame being painted, so after setting
+     * null, the previous surface is no longer used.
+     */
+    public synchronized void setShowNextSurfaceHolder(SurfaceHolder showNextSurfaceHolder) {
+        this.showNextSurfaceHolder = showNextSurfaceHolder;
+        shownNextFigureType = -1;
+    }
+
+    @Override
+    public synchronized void render(FrameSnapshot frame) {
+        repaintField(frame);
+        if (frame.nextFigureType() != shownNextFigureType) {
+            repaintNext(frame);
+        }
+    }
+
+    /**
+     * Obtains a Canvas for the changed region of the game field and repaints that region.
+     */
+    private void repaintField(FrameSnapshot frame) {
+        if (gameSurfaceHolder == null) {
+            return;
+        }
+
+        updateLayout(frame);
+        boolean isNewField = shownFieldGeneration != frame.fieldGeneration();
+        boolean isFullRepaint = isFullRepaintNeeded || isNewField;
+        dirtyRect.setEmpty();
+        updateStack(frame, isNewField);
+        if (!isFullRepaint) {
+            if (!isFigureShownAt(frame)) {
+                addShownFigure();
+                addFigure(frame);
+            }
+            if (!isHintShownAt(frame)) {
+                addShownHint();
+                addHint(frame);
+            }
+            if (!isGhostShownAt(frame)) {
+                addShownGhost();
+                addGhost(frame);
+            }
+            if (overlayMetrics != null) {
+                addPixels(0, 0, visibleColumns * cellPixels, overlayHeight());
+            }
+            if (dirtyRect.isEmpty()) {
+                // Nothing has changed since the last frame.
+                return;
+            }
+        }
+
+        // The surface may extend the dirty region, e.g. if it has no previous frame to keep.
+        Canvas canvas = isFullRepaint
+                ? gameSurfaceHolder.lockCanvas()
+                : gameSurfaceHolder.lockCanvas(dirtyRect);
+        if (canvas == null) {
+            return;
+        }
+        // The canvas is clipped to the dirty region, so everything is painted just there.
+        canvas.drawColor(FIELD_COLOR);
+        canvas.drawBitmap(stackBitmap, 0, 0, null);
+        if (frame.ghostFigureType() != 0) {
+            paintGhost(canvas, frame);
+        }
+        if (frame.hintFigureType() != 0) {
+            paintHint(canvas, frame);
+        }
+        if (frame.figureType() != 0) {
+            paintFigure(canvas, frame);
+        }
+        if (overlayMetrics != null) {
+            paintOverlay(canvas, frame);
+        }
+        gameSurfaceHolder.unlockCanvasAndPost(canvas);
+
+        rememberShownFigure(frame);
+        rememberShownHint(frame);
+        rememberShownGhost(frame);
+        isFullRepaintNeeded = false;
+    }
+
+    /**
+     * Obtains a Canvas and paints the 'next' figure on it.
+     */
+    private void repaintNext(FrameSnapshot frame) {
+        if (showNextSurfaceHolder != null) {
+            Canvas canvas = showNextSurfaceHolder.lockCanvas();
+            if (canvas != null) {
+                paintNext(canvas, frame);
+                showNextSurfaceHolder.unlockCanvasAndPost(canvas);
+                shownNextFigureType = frame.nextFigureType();
+            }
+        }
+    }
+
+    /**
+     * Derives the size of the cells from the sizes of the surface and the game field.
+     */
+    private void updateLayout(FrameSnapshot frame) {
+        int cell = cellPixels;
+        if (surfaceWidth > 0 && surfaceHeight > 0) {
+            cell = Math.max(1, Math.min(
+                    surfaceWidth / frame.fieldWidth(), surfaceHeight / frame.fieldHeight()));
+            visibleColumns = Math.min(frame.fieldWidth(), Math.max(1, surfaceWidth / cell));
+            visibleRows = Math.min(frame.fieldHeight(), Math.max(1, surfaceHeight / cell));
+        } else {
+            visibleColumns = frame.fieldWidth();
+            visibleRows = frame.fieldHeight();
+        }
+        if (cell != cellPixels) {
+            cellPixels = cell;
+            hintStrokePixels = Math.max(1, cell / HINT_STROKE_DIVISOR);
+            hintPaint.setStrokeWidth(hintStrokePixels);
+            ghostPaint.setStrokeWidth(hintStrokePixels);
+            isFullRepaintNeeded = true;
+            // Makes updateStack() repaint all rows in the new size.
+            shownFieldGeneration = -1;
+        }
+        updateViewport(frame);
+    }
+
+    /**
+     * Moves the viewport of a field that does not fit the surface when the current figure
+     * leaves it, and keeps it within the field.
+     */
+    private void updateViewport(FrameSnapshot frame) {
+        int column = firstColumn;
+        int row = firstRow;
+        if (frame.figureType() != 0) {
+            int minX = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+                minX = Math.min(minX, frame.figureX(i));
+                maxX = Math.max(maxX, frame.figureX(i));
+                minY = Math.min(minY, frame.figureY(i));
+                maxY = Math.max(maxY, frame.figureY(i));
+            }
+            if (minX < column || maxX >= column + visibleColumns) {
+                column = (minX + maxX + 1) / 2 - visibleColumns / 2;
+            }
+            if (minY < row || maxY >= row + visibleRows) {
+                // The figure falls from near the top of the viewport to its bottom.
+                row = minY - Math.min(Figure.FIGURE_SIZE, visibleRows / 4);
+            }
+        }
+        column = Math.max(1, Math.min(column, frame.fieldWidth() - visibleColumns + 1));
+        row = Math.max(1, Math.min(row, frame.fieldHeight() - visibleRows + 1));
+        if (column != firstColumn || row != firstRow) {
+            firstColumn = column;
+            firstRow = row;
+            isFullRepaintNeeded = true;
+            shownFieldGeneration = -1;
+        }
+    }
+
+    /**
+     * Returns the left pixel of a column of the game field on the surface.
+     */
+    private int left(int x) {
+        return (x - firstColumn) * cellPixels;
+    }
+
+    /**
+     * Returns the top pixel of a row of the game field on the surface.
+     */
+    private int top(int y) {
+        return (y - firstRow) * cellPixels;
+    }
+
+    /**
+     * Brings the off-screen bitmap of settled blocks up to date with the game field, and adds
+     * the rows that changed to the dirty region. Only the rows in the changed range of the
+     * frame are compared, unless all rows are repainted, e.g. after the viewport moved.
+     *
+     * @param isRepaintAll true to repaint all rows, not only the changed ones.
+     */
+    private void updateStack(FrameSnapshot frame, boolean isRepaintAll) {
+        int width = visibleColumns * cellPixels;
+        int height = visibleRows * cellPixels;
+        if (stackBitmap == null
+                || stackBitmap.getWidth() != width || stackBitmap.getHeight() != height) {
+            if (stackBitmap != null) {
+                stackBitmap.recycle();
+            }
+            stackBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            stackCanvas = new Canvas(stackBitmap);
+            shownCells = new byte[(visibleColumns + 2) * (visibleRows + 2)];
+            isRepaintAll = true;
+        }
+
+        if (!isRepaintAll && frame.fieldVersion() == shownFieldVersion) {
+            return;
+        }
+
+        int topY = firstRow;
+        int bottomY = firstRow + visibleRows - 1;
+        if (!isRepaintAll && shownFieldVersion - frame.previousFieldVersion() >= 0) {
+            // The frame knows all the rows that changed since the shown version. Otherwise it
+            // was captured before and after other frames, and any visible row may differ.
+            topY = Math.max(topY, frame.changedTopY());
+            bottomY = Math.min(bottomY, frame.changedBottomY());
+        }
+
+        int stride = visibleColumns + 2;
+        int lastColumn = firstColumn + visibleColumns - 1;
+        for (int y = topY; y <= bottomY; y++) {
+            int rowOffset = (y - firstRow + 1) * stride + 1 - firstColumn;
+            boolean isChangedRow = isRepaintAll;
+            for (int x = firstColumn; x <= lastColumn && !isChangedRow; x++) {
+                isChangedRow = shownCells[rowOffset + x] != frame.cell(x, y);
+            }
+            if (isChangedRow) {
+                paintStackRow(frame, y);
+                addCells(firstColumn, y, lastColumn, y);
+            }
+        }
+
+        shownFieldGeneration = frame.fieldGeneration();
+        shownFieldVersion = frame.fieldVersion();
+    }
+
+    /**
+     * Repaints one row of settled blocks in the off-screen bitmap, and remembers it as shown.
+     */
+    private void paintStackRow(FrameSnapshot frame, int y) {
+        int rowOffset = (y - firstRow + 1) * (visibleColumns + 2) + 1 - firstColumn;
+        stackCanvas.drawRect(0, top(y), visibleColumns * cellPixels, top(y + 1), fieldPaint);
+        for (int x = firstColumn; x < firstColumn + visibleColumns; x++) {
+            int cell = frame.cell(x, y);
+            shownCells[rowOffset + x] = (byte) cell;
+            // Draw non-empty field cells.
+            if (cell != CELL_IS_EMPTY) {
+                stackCanvas.drawRect(left(x), top(y), left(x + 1), top(y + 1),
+                        figurePaints[cell]);
+            }
+        }
+    }
+
+    private boolean isFigureShownAt(FrameSnapshot frame) {
+        boolean hasFigure = frame.figureType() != 0;
+        if (!hasFigure || !isFigureShown) {
+            return !hasFigure && !isFigureShown;
+        }
+        for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+            if (frame.figureX(i) != shownFigureX[i] || frame.figureY(i) != shownFigureY[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addShownFigure() {
+        if (isFigureShown) {
+            for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+                addCells(shownFigureX[i], shownFigureY[i], shownFigureX[i], shownFigureY[i]);
+            }
+        }
+    }
+
+    private void addFigure(FrameSnapshot frame) {
+        if (frame.figureType() != 0) {
+            for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+                addCells(frame.figureX(i), frame.figureY(i), frame.figureX(i), frame.figureY(i));
+            }
+        }
+    }
+
+    /**
+     * Adds a rectangle of game field cells to the dirty region.
+     */
+    private void addCells(int fromX, int fromY, int toX, int toY) {
+        addPixels(left(fromX), top(fromY), left(toX + 1), top(toY + 1));
+    }
+
+    /**
+     * Adds a rectangle in pixels to the dirty region.
+     */
+    private void addPixels(int left, int top, int right, int bottom) {
+        if (dirtyRect.isEmpty()) {
+            dirtyRect.set(left, top, right, bottom);
+        } else {
+            dirtyRect.union(left, top, right, bottom);
+        }
+    }
+
+    private void rememberShownFigure(FrameSnapshot frame) {
+        isFigureShown = frame.figureType() != 0;
+        if (isFigureShown) {
+            for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+                shownFigureX[i] = frame.figureX(i);
+                shownFigureY[i] = frame.figureY(i);
+            }
+        }
+    }
+
+    private boolean isHintShownAt(FrameSnapshot frame) {
+        if (frame.hintFigureType() != shownHintType) {
+            return false;
+        }
+        for (int i = 0; i < Figure.FIGURE_SIZE && shownHintType != 0; i++) {
+            if (frame.hintX(i) != shownHintX[i] || frame.hintY(i) != shownHintY[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addShownHint() {
+        if (shownHintType != 0) {
+            for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+                addCells(shownHintX[i], shownHintY[i], shownHintX[i], shownHintY[i]);
+            }
+        }
+    }
+
+    private void addHint(FrameSnapshot frame) {
+        if (frame.hintFigureType() != 0) {
+            for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+                addCells(frame.hintX(i), frame.hintY(i), frame.hintX(i), frame.hintY(i));
+            }
+        }
+    }
+
+    private void rememberShownHint(FrameSnapshot frame) {
+        shownHintType = frame.hintFigureType();
+        if (shownHintType != 0) {
+            for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+                shownHintX[i] = frame.hintX(i);
+                shownHintY[i] = frame.hintY(i);
+            }
+        }
+    }
+
+    /**
+     * Paints the outline of the hint cells on a given Canvas, inside the cells, so the
+     * outline stays within the dirty region of the hint.
+     */
+    private void paintHint(Canvas canvas, FrameSnapshot frame) {
+        hintPaint.setColor(figuresColor[frame.hintFigureType()]);
+        float inset = hintStrokePixels / 2f;
+        for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+            canvas.drawRect(left(frame.hintX(i)) + inset,
+                    top(frame.hintY(i)) + inset,
+                    left(frame.hintX(i) + 1) - inset,
+                    top(frame.hintY(i) + 1) - inset,
+                    hintPaint);
+        }
+    }
+
+    private boolean isGhostShownAt(FrameSnapshot frame) {
+        if (frame.ghostFigureType() != shownGhostType) {
+            return false;
+        }
+        for (int i = 0; i < Figure.FIGURE_SIZE && shownGhostType != 0; i++) {
+            if (frame.ghostX(i) != shownGhostX[i] || frame.ghostY(i) != shownGhostY[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addShownGhost() {
+        if (shownGhostType != 0) {
+            for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+                addCells(shownGhostX[i], shownGhostY[i], shownGhostX[i], shownGhostY[i]);
+            }
+        }
+    }
+
+    private void addGhost(FrameSnapshot frame) {
+        if (frame.ghostFigureType() != 0) {
+            for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+                addCells(frame.ghostX(i), frame.ghostY(i), frame.ghostX(i), frame.ghostY(i));
+            }
+        }
+    }
+
+    private void rememberShownGhost(FrameSnapshot frame) {
+        shownGhostType = frame.ghostFigureType();
+        if (shownGhostType != 0) {
+            for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+                shownGhostX[i] = frame.ghostX(i);
+                shownGhostY[i] = frame.ghostY(i);
+            }
+        }
+    }
+
+    /**
+     * Paints the outline of the ghost cells on a given Canvas, inside the cells like the hint.
+     */
+    private void paintGhost(Canvas canvas, FrameSnapshot frame) {
+        float inset = hintStrokePixels / 2f;
+        for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+            canvas.drawRect(left(frame.ghostX(i)) + inset,
+                    top(frame.ghostY(i)) + inset,
+                    left(frame.ghostX(i) + 1) - inset,
+                    top(frame.ghostY(i) + 1) - inset,
+                    ghostPaint);
+        }
+    }
+
+    /**
+     * Paints the current figure on a given Canvas, in its position on the game field.
+     *
+     * @param canvas to paint the Figure.
+     */
+    private void paintFigure(Canvas canvas, FrameSnapshot frame) {
+        // Draw figure parts using color of the figure type.
+        Paint paint = figurePaints[frame.figureType()];
+        for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+            canvas.drawRect(left(frame.figureX(i)),
+                    top(frame.figureY(i)),
+                    left(frame.figureX(i) + 1),
+                    top(frame.figureY(i) + 1),
+                    paint);
+        }
+    }
+
+    private static int overlayHeight() {
+        return GameMetrics.LINE_COUNT * OVERLAY_LINE_PIXELS + OVERLAY_LINE_PIXELS / 2;
+    }
+
+    /**
+     * Paints the latency metrics over the top of the game field, formatted without allocating.
+     */
+    private void paintOverlay(Canvas canvas, FrameSnapshot frame) {
+        canvas.drawRect(0, 0, visibleColumns * cellPixels, overlayHeight(),
+                overlayBackgroundPaint);
+        for (int i = 0; i < GameMetrics.LINE_COUNT; i++) {
+            int length = overlayMetrics.formatLine(i, overlayLine);
+            canvas.drawText(overlayLine, 0, length,
+                    OVERLAY_LINE_PIXELS / 4f, (i + 1) * OVERLAY_LINE_PIXELS, overlayTextPaint);
+        }
+    }
+
+    /**
+     * Paints the 'next' figure on a given Canvas, or just the background if it is not shown.
+     *
+     * @param canvas to paint the Figure.
+     */
+    private void paintNext(Canvas canvas, FrameSnapshot frame) {
+        // Fill all the 'show next' canvas with background.
+        canvas.drawRect(0, 0, canvas.getWidth(), canvas.getHeight(), showNextBackgroundPaint);
+
+        if (frame.nextFigureType() == 0) {
+            return;
+        }
+
+        // Draw figure parts using color of the figure type, in cells that fit the preview of
+        // 4 x 2 cells into the canvas.
+        int cell = Math.min(canvas.getWidth() / Figure.FIGURE_SIZE, canvas.getHeight() / 2);
+        Paint paint = figurePaints[frame.nextFigureType()];
+        for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+            int x = frame.nextX(i);
+            int y = frame.nextY(i);
+            canvas.drawRect(x * cell, y * cell, (x + 1) * cell, (y + 1) * cell, paint);
+        }
+    }
+}
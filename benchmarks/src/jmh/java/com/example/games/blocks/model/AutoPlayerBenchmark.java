@@ -0,0 +1,43 @@
+package com.example.games.blocks.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of the AutoPlayer search for one placement on the board fixtures.
+ *
+ * <p> The time budget is large enough for the search to always complete the lookahead, so
+ * the results compare the cost of the lookahead levels.
+ */
+@State(Scope.Thread)
+public class AutoPlayerBenchmark {
+
+    @Param({"EMPTY", "NEAR_FULL", "TALL_STACK"})
+    public String fixture;
+
+    @Param({"0", "1"})
+    public int lookahead;
+
+    private Board board;
+    private Figure figure;
+    private final int[] upcomingTypes = {Figure.FT_PIN, Figure.FT_BRICK};
+    private AutoPlayer autoPlayer;
+
+    @Setup
+    public void setUp() {
+        board = BoardFixtures.create(BoardFixtures.Fixture.valueOf(fixture));
+        figure = new Figure(board, Figure.FT_G_LEFT);
+        autoPlayer = new AutoPlayer();
+        autoPlayer.setLookahead(lookahead);
+        autoPlayer.setTimeBudgetMillis(1000);
+    }
+
+    @Benchmark
+    public int search() {
+        autoPlayer.search(board, figure, upcomingTypes, upcomingTypes.length);
+        return autoPlayer.bestX();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.games.blocks.model;
+
+import static com.example.games.blocks.model.Game.DEFAULT_FIELD_HEIGHT;
+import static com.example.games.blocks.model.Game.DEFAULT_FIELD_WIDTH;
+
+/**
+ * Reproducible game field states for benchmarks. Every fixture is built from fixed patterns,
+ * so results are comparable between runs and engine versions.
+ */
+final class BoardFixtures {
+
+    enum Fixture {
+        // No settled blocks at all.
+        EMPTY,
+        // Dense stack up to 4 rows below the top, one hole per row, no full rows.
+        NEAR_FULL,
+        // 4 full rows at the bottom with a ragged stack above them.
+        MULTI_LINE_CLEAR,
+        // Towers in every other column up to 3 rows below the top, no full rows.
+        TALL_STACK
+    }
+
+    private BoardFixtures() {
+    }
+
+    static Board create(Fixture fixture) {
+        Board board = new Board(DEFAULT_FIELD_WIDTH, DEFAULT_FIELD_HEIGHT);
+        switch (fixture) {
+            case EMPTY:
+                break;
+            case NEAR_FULL:
+                for (int y = 5; y <= DEFAULT_FIELD_HEIGHT; y++) {
+                    fillRow(board, y, y % DEFAULT_FIELD_WIDTH + 1);
+                }
+                break;
+            case MULTI_LINE_CLEAR:
+                for (int y = DEFAULT_FIELD_HEIGHT - 3; y <= DEFAULT_FIELD_HEIGHT; y++) {
+                    fillRow(board, y, 0);
+                }
+                for (int y = DEFAULT_FIELD_HEIGHT - 10; y < DEFAULT_FIELD_HEIGHT - 3; y++) {
+                    for (int x = 1; x <= DEFAULT_FIELD_WIDTH; x++) {
+                        if ((x + y) % 3 != 0) {
+                            set(board, x, y, (x + y) % Figure.FT_MAX + 1);
+                        }
+                    }
+                }
+                break;
+            case TALL_STACK:
+                for (int x = 2; x <= DEFAULT_FIELD_WIDTH; x += 2) {
+                    for (int y = 4; y <= DEFAULT_FIELD_HEIGHT; y++) {
+                        set(board, x, y, x % Figure.FT_MAX + 1);
+                    }
+                }
+                break;
+        }
+        return board;
+    }
+
+    /**
+     * Fills a row, except an optional hole.
+     *
+     * @param holeX column to leave empty, 0 to fill the whole row.
+     */
+    private static void fillRow(Board board, int y, int holeX) {
+        for (int x = 1; x <= DEFAULT_FIELD_WIDTH; x++) {
+            if (x != holeX) {
+                set(board, x, y, (x + y) % Figure.FT_MAX + 1);
+            }
+        }
+    }
+
+    private static void set(Board board, int x, int y, int figureType) {
+        board.lock(new int[]{1}, x, y, figureType);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.games.blocks.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of the Figure operations on the board fixtures.
+ *
+ * <p> Operations that change the field or the figure first restore both from the fixture.
+ * The cost of that restore alone is measured by {@link #restore()}.
+ */
+@State(Scope.Thread)
+public class FigureBenchmark {
+
+    @Param({"EMPTY", "NEAR_FULL", "TALL_STACK"})
+    public String fixture;
+
+    private Board fixtureBoard;
+    private Board board;
+
+    // Figure at the spawn position and a working copy of it.
+    private Figure spawned;
+    private Figure figure;
+    // Figure resting on the stack, so the next step down locks it.
+    private Figure landed;
+
+    // Figure that is only rotated, never locked.
+    private Figure rotating;
+
+    @Setup
+    public void setUp() {
+        fixtureBoard = BoardFixtures.create(BoardFixtures.Fixture.valueOf(fixture));
+        board = BoardFixtures.create(BoardFixtures.Fixture.valueOf(fixture));
+
+        spawned = new Figure(board, Figure.FT_G_LEFT);
+        figure = new Figure(board, Figure.FT_G_LEFT);
+
+        // Find the landing position on a scratch copy of the field.
+        landed = new Figure(board, Figure.FT_G_LEFT);
+        Figure falling = new Figure(board, Figure.FT_G_LEFT);
+        while (falling.maybeOneStepDown()) {
+            landed.copyFrom(falling);
+        }
+        board.copyFrom(fixtureBoard);
+
+        rotating = new Figure(board, Figure.FT_PIN);
+        rotating.maybeOneStepDown();
+    }
+
+    @Benchmark
+    public int restore() {
+        board.copyFrom(fixtureBoard);
+        figure.copyFrom(spawned);
+        return figure.cellY(0);
+    }
+
+    @Benchmark
+    public int rotate() {
+        rotating.rotate();
+        return rotating.rotationStateNumber;
+    }
+
+    @Benchmark
+    public boolean maybeOneStepDown() {
+        board.copyFrom(fixtureBoard);
+        figure.copyFrom(spawned);
+        return figure.maybeOneStepDown();
+    }
+
+    @Benchmark
+    public boolean maybeOneStepDownAndLock() {
+        board.copyFrom(fixtureBoard);
+        figure.copyFrom(landed);
+        return figure.maybeOneStepDown();
+    }
+
+    @Benchmark
+    public int drop() {
+        board.copyFrom(fixtureBoard);
+        figure.copyFrom(spawned);
+        return figure.drop();
+    }
+}
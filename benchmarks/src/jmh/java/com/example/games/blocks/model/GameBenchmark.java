@@ -0,0 +1,44 @@
+package com.example.games.blocks.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static com.example.games.blocks.model.Game.DEFAULT_FIELD_HEIGHT;
+
+/**
+ * Throughput of the Game line reduction on the board fixtures.
+ *
+ * <p> Every operation first restores the field from the fixture. The cost of that restore
+ * alone is measured by {@link #restore()}.
+ */
+@State(Scope.Thread)
+public class GameBenchmark {
+
+    @Param({"EMPTY", "NEAR_FULL", "MULTI_LINE_CLEAR", "TALL_STACK"})
+    public String fixture;
+
+    private Board fixtureBoard;
+    private Game game;
+
+    @Setup
+    public void setUp() {
+        fixtureBoard = BoardFixtures.create(BoardFixtures.Fixture.valueOf(fixture));
+        game = new Game();
+    }
+
+    @Benchmark
+    public int restore() {
+        game.gameField.copyFrom(fixtureBoard);
+        return game.gameField.cell(1, DEFAULT_FIELD_HEIGHT);
+    }
+
+    @Benchmark
+    public int reduceLines() {
+        game.gameField.copyFrom(fixtureBoard);
+        game.reduceLines();
+        return game.gameField.cell(1, DEFAULT_FIELD_HEIGHT);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.games.blocks.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of whole autoplayed games, from the same seed every time.
+ *
+ * <p> The game and its AutoPlayer are reused by all operations, as by the simulator, so
+ * gc.alloc.rate.norm is the garbage of one game in steady state. It is about 0 bytes without
+ * lookahead; with lookahead, only the fork-join tasks of the searches are allocated.
+ */
+@State(Scope.Thread)
+public class WholeGameBenchmark {
+
+    // Stops a game that the AutoPlayer plays for too long.
+    private static final int MAX_TICKS = 5_000;
+
+    @Param({"0", "1"})
+    public int lookahead;
+
+    private Game game;
+
+    @Setup
+    public void setUp() {
+        AutoPlayer autoPlayer = new AutoPlayer();
+        autoPlayer.setLookahead(lookahead);
+        autoPlayer.setTimeBudgetMillis(0);
+        game = new Game();
+        game.setRealTime(false);
+        game.setAutoPlayer(autoPlayer);
+        game.setAutoPlay(true);
+        game.setSeed(1);
+    }
+
+    @Benchmark
+    public int play() {
+        game.newGame();
+        for (int tick = 0; tick < MAX_TICKS && game.isInGame(); tick++) {
+            game.advanceTick();
+        }
+        return game.getScore();
+    }
+}
@@ -0,0 +1,439 @@
+package com.example.games.blocks.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computer player: finds the best placement of the current figure, to be shown as a hint or
+ * played by the Game in autoplay mode.
+ *
+ * <p> Every reachable placement is scored with a board heuristic (aggregate height, holes,
+ * bumpiness and wells, plus the cleared lines). With lookahead, a placement is scored by the
+ * best placements of the upcoming figures after it.
+ *
+ * <p> The search deepens one upcoming figure at a time, evaluating the placements of the
+ * current figure in parallel on a {@link ForkJoinPool}, until the lookahead or the time
+ * budget runs out. A level that ran out of time is discarded, so the result is always that of
+ * the deepest completed level; the level without lookahead is always completed.
+ *
+ * <p> Not thread safe, the Game calls it under its lock.
+ */
+public final class AutoPlayer {
+
+    public static final int DEFAULT_TIME_BUDGET_MS = 8;
+    public static final int DEFAULT_LOOKAHEAD = 1;
+
+    // Heuristic weights, per unit of each board feature.
+    private static final double WEIGHT_LINES = 0.76;
+    private static final double WEIGHT_AGGREGATE_HEIGHT = -0.51;
+    private static final double WEIGHT_HOLES = -0.36;
+    private static final double WEIGHT_BUMPINESS = -0.18;
+    private static final double WEIGHT_WELLS = -0.1;
+
+    // Deadline of a search without a time limit. Real deadlines are compared with nanoTime()
+    // by subtraction, so the unlimited one has to be a special value.
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    // Score of a placement after which an upcoming figure does not fit, i.e. the game is over.
+    private static final double GAME_OVER_SCORE = -1e9;
+
+    private final ForkJoinPool pool;
+
+    private long timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIME_BUDGET_MS);
+    private int lookahead = DEFAULT_LOOKAHEAD;
+
+    // Placements of the current figure, found by the last search, and their field size.
+    private Placements placements;
+    private int fieldWidth;
+    private int fieldHeight;
+    private double[] scores;
+    private double[] levelScores;
+
+    // Evaluators reused by all searches on a field of the same size.
+    private EvaluatorPool evaluators;
+
+    // Tasks that score the placements of a search level, reused by every level and search.
+    // Task i splits its range between tasks 2 * i and 2 * i + 1, task 1 takes all placements.
+    private LevelTask[] levelTasks = new LevelTask[0];
+
+    // The search level the tasks run, set before the tasks are invoked.
+    private Board levelBoard;
+    private int levelFigureType;
+    private int[] levelUpcomingTypes;
+    private int levelDepth;
+    private long levelDeadline;
+    private volatile boolean isLevelTimedOut;
+
+    // Best placement found by the last search, -1 if there is none.
+    private int bestPlacement = -1;
+
+    // Steps to move the current figure to where it is dropped to its best placement.
+    private int[] path;
+    private int pathLength;
+
+    /**
+     * Creates a player that evaluates placements on the common fork-join pool.
+     */
+    public AutoPlayer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public AutoPlayer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the time to search for one placement, 0 for no limit, e.g. to get the same results
+     * on any device. The placements are always scored at least without lookahead, even if that
+     * takes longer.
+     */
+    public void setTimeBudgetMillis(long timeBudgetMs) {
+        this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+    }
+
+    /**
+     * Sets the number of upcoming figures to look ahead, 0 to score the placements of the
+     * current figure alone.
+     */
+    public void setLookahead(int lookahead) {
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Searches for the best placement of a figure.
+     *
+     * @param upcomingTypes types of the figures after this one, in order.
+     * @param upcomingCount number of known upcoming figure types.
+     * @return true if a placement is found.
+     */
+    boolean search(Board board, Figure figure, int[] upcomingTypes, int upcomingCount) {
+        long deadline = timeBudgetNanos > 0 ? System.nanoTime() + timeBudgetNanos : NO_DEADLINE;
+        if (placements == null || fieldWidth != board.width() || fieldHeight != board.height()) {
+            fieldWidth = board.width();
+            fieldHeight = board.height();
+            placements = new Placements(fieldWidth, fieldHeight);
+            scores = new double[0];
+            evaluators = new EvaluatorPool(fieldWidth, fieldHeight);
+        }
+        bestPlacement = -1;
+        pathLength = 0;
+
+        int count = placements.find(board, figure.figureType(), figure.rotationStateNumber,
+                figure.anchorX(), figure.anchorY());
+        if (count == 0) {
+            return false;
+        }
+        // The search needs more room as the stack grows.
+        if (scores.length < placements.maxPathLength()) {
+            scores = new double[placements.maxPathLength()];
+            levelScores = new double[placements.maxPathLength()];
+            path = new int[placements.maxPathLength()];
+        }
+
+        // Without lookahead, always completed on the calling thread.
+        Evaluator evaluator = evaluators.take(0);
+        evaluator.start(board, figure.figureType(), upcomingTypes, 0, 0);
+        for (int i = 0; i < count; i++) {
+            scores[i] = evaluator.scorePlacement(placements, i);
+        }
+        evaluators.give(evaluator);
+
+        int depth = Math.min(lookahead, upcomingCount);
+        if (depth > 0 && levelTasks.length < 4 * count) {
+            // Halving a range of count placements down to single ones takes less than 4 * count
+            // tasks. At least doubles, so a few more placements do not allocate again.
+            int oldLength = levelTasks.length;
+            levelTasks = Arrays.copyOf(levelTasks, Math.max(4 * count, 2 * oldLength));
+            for (int i = oldLength; i < levelTasks.length; i++) {
+                levelTasks[i] = new LevelTask(i);
+            }
+        }
+        levelBoard = board;
+        levelFigureType = figure.figureType();
+        levelUpcomingTypes = upcomingTypes;
+        levelDeadline = deadline;
+        for (int level = 1; level <= depth; level++) {
+            if (isPast(deadline)) {
+                break;
+            }
+            levelDepth = level;
+            isLevelTimedOut = false;
+            pool.invoke(levelTasks[1].reset(0, count));
+            if (isLevelTimedOut) {
+                break;
+            }
+            System.arraycopy(levelScores, 0, scores, 0, count);
+        }
+        levelBoard = null;
+
+        bestPlacement = 0;
+        for (int i = 1; i < count; i++) {
+            if (scores[i] > scores[bestPlacement]) {
+                bestPlacement = i;
+            }
+        }
+        pathLength = placements.pathTo(bestPlacement, path);
+        return true;
+    }
+
+    private static boolean isPast(long deadline) {
+        return deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+    }
+
+    boolean hasPlacement() {
+        return bestPlacement >= 0;
+    }
+
+    int bestRotation() {
+        return placements.rotation(bestPlacement);
+    }
+
+    int bestX() {
+        return placements.x(bestPlacement);
+    }
+
+    int bestLandingY() {
+        return placements.landingY(bestPlacement);
+    }
+
+    /**
+     * Returns the number of steps that move the figure to where it is dropped to its best
+     * placement.
+     */
+    int pathLength() {
+        return pathLength;
+    }
+
+    /**
+     * Returns a step of the path to the best placement: Game.CMD_LEFT, CMD_RIGHT, CMD_ROTATE,
+     * or {@link Placements#WAIT} to let gravity move the figure one row down.
+     */
+    int pathStep(int i) {
+        return path[i];
+    }
+
+    /**
+     * Scores a range of placements of the current figure at the lookahead of the search level,
+     * splitting the range in halves down to single placements. Reused for every level, so a
+     * search allocates no tasks once the field has had as many placements.
+     */
+    private final class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+        private int from;
+        private int to;
+
+        LevelTask(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Prepares the task to run again on another range.
+         */
+        LevelTask reset(int from, int to) {
+            reinitialize();
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(levelTasks[2 * index].reset(from, middle),
+                        levelTasks[2 * index + 1].reset(middle, to));
+                return;
+            }
+            Evaluator evaluator = evaluators.take(levelDepth);
+            evaluator.start(levelBoard, levelFigureType, levelUpcomingTypes, levelDepth,
+                    levelDeadline);
+            for (int i = from; i < to && !isLevelTimedOut; i++) {
+                levelScores[i] = evaluator.scorePlacement(placements, i);
+                if (evaluator.isTimedOut) {
+                    isLevelTimedOut = true;
+                }
+            }
+            evaluators.give(evaluator);
+        }
+    }
+
+    /**
+     * Idle evaluators for a field size. A search takes one per task that runs at the same
+     * time, so the pool grows to about the number of threads and then stops allocating.
+     * <p> Using 'synchronized' for simplicity, an evaluator is taken once per placement.
+     */
+    private static final class EvaluatorPool {
+        private final int width;
+        private final int height;
+        private Evaluator[] idle = new Evaluator[0];
+        private int idleCount;
+
+        EvaluatorPool(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Returns an idle evaluator with scratch boards for at least a given lookahead, or a
+         * new one.
+         */
+        synchronized Evaluator take(int depth) {
+            for (int i = idleCount - 1; i >= 0; i--) {
+                Evaluator evaluator = idle[i];
+                if (evaluator.maxDepth() >= depth) {
+                    idle[i] = idle[--idleCount];
+                    idle[idleCount] = null;
+                    return evaluator;
+                }
+            }
+            return new Evaluator(width, height, depth);
+        }
+
+        synchronized void give(Evaluator evaluator) {
+            if (idleCount == idle.length) {
+                idle = Arrays.copyOf(idle, Math.max(2 * idleCount, 4));
+            }
+            idle[idleCount++] = evaluator;
+        }
+    }
+
+    /**
+     * Scores placements with lookahead, using its own scratch boards, so evaluators can run
+     * in parallel on the same root board. An evaluator is reused for every search, started
+     * again on the board and figure of each.
+     */
+    private static final class Evaluator {
+        private Board root;
+        private int figureType;
+        private int[] upcomingTypes;
+        private int depth;
+        private long deadline;
+
+        // Board after the placement of the figure at each level, level 0 being the current one.
+        private final Board[] boards;
+        private final Placements[] upcomingPlacements;
+        private final int[] heights;
+
+        boolean isTimedOut;
+
+        /**
+         * Creates an evaluator for a field size, with scratch boards for up to a given
+         * lookahead.
+         */
+        Evaluator(int width, int height, int maxDepth) {
+            boards = new Board[maxDepth + 1];
+            upcomingPlacements = new Placements[maxDepth];
+            for (int level = 0; level <= maxDepth; level++) {
+                boards[level] = new Board(width, height);
+                if (level < maxDepth) {
+                    upcomingPlacements[level] = new Placements(width, height);
+                }
+            }
+            heights = new int[width + 2];
+        }
+
+        int maxDepth() {
+            return upcomingPlacements.length;
+        }
+
+        /**
+         * Starts scoring the placements of a figure on a board of the size of this evaluator.
+         */
+        void start(Board root, int figureType, int[] upcomingTypes, int depth, long deadline) {
+            this.root = root;
+            this.figureType = figureType;
+            this.upcomingTypes = upcomingTypes;
+            this.depth = depth;
+            this.deadline = deadline;
+            isTimedOut = false;
+        }
+
+        /**
+         * Scores a placement of the current figure.
+         */
+        double scorePlacement(Placements placements, int placement) {
+            Board board = boards[0];
+            board.copyFrom(root);
+            FigureShapes.lock(board, figureType, placements.rotation(placement),
+                    placements.x(placement), placements.landingY(placement));
+            int lines = board.removeFullRows();
+            return WEIGHT_LINES * lines + scoreBest(1);
+        }
+
+        /**
+         * Returns the score of the best placement of an upcoming figure on the board of the
+         * previous level, or the score of that board if the lookahead ends there.
+         */
+        private double scoreBest(int level) {
+            Board previous = boards[level - 1];
+            if (level > depth) {
+                return scoreBoard(previous);
+            }
+            if (isPast(deadline)) {
+                isTimedOut = true;
+                return 0;
+            }
+
+            int type = upcomingTypes[level - 1];
+            Placements placements = upcomingPlacements[level - 1];
+            int count = placements.find(previous, type, 0,
+                    Figure.initialX(previous.width()), Figure.FIGURE_INITIAL_Y);
+            if (count == 0) {
+                return GAME_OVER_SCORE;
+            }
+            Board board = boards[level];
+            double best = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count && !isTimedOut; i++) {
+                board.copyFrom(previous);
+                FigureShapes.lock(board, type, placements.rotation(i),
+                        placements.x(i), placements.landingY(i));
+                int lines = board.removeFullRows();
+                best = Math.max(best, WEIGHT_LINES * lines + scoreBest(level + 1));
+            }
+            return best;
+        }
+
+        /**
+         * Scores the settled blocks of a board, higher is better.
+         */
+        private double scoreBoard(Board board) {
+            int width = board.width();
+            int height = board.height();
+
+            // Column heights come from the skyline of the board. Every cell of a column below
+            // its top is either a block or a hole, so the holes are the cells below the tops
+            // less the blocks.
+            for (int x = 1; x <= width; x++) {
+                heights[x] = height + 1 - board.columnTop(x);
+            }
+
+            int aggregateHeight = 0;
+            int bumpiness = 0;
+            int wells = 0;
+            for (int x = 1; x <= width; x++) {
+                aggregateHeight += heights[x];
+                if (x < width) {
+                    bumpiness += Math.abs(heights[x] - heights[x + 1]);
+                }
+                // Walls count as full columns.
+                int left = x > 1 ? heights[x - 1] : height;
+                int right = x < width ? heights[x + 1] : height;
+                int wellDepth = Math.min(left, right) - heights[x];
+                if (wellDepth > 0) {
+                    wells += wellDepth * (wellDepth + 1) / 2;
+                }
+            }
+
+            int holes = aggregateHeight - board.blockCount();
+
+            return WEIGHT_AGGREGATE_HEIGHT * aggregateHeight
+                    + WEIGHT_HOLES * holes
+                    + WEIGHT_BUMPINESS * bumpiness
+                    + WEIGHT_WELLS * wells;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.games.blocks.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Deals figure types from a shuffled 'bag' holding one figure of every type, then refills
+ * the bag. Every type appears exactly once in each group of {@link Figure#FT_MAX} figures.
+ */
+public class BagRandomizer implements FigureRandomizer {
+
+    private final FastRandom random = new FastRandom(0);
+
+    private final int[] bag = new int[Figure.FT_MAX];
+
+    // Number of figure types left in the bag.
+    private int bagCount;
+
+    @Override
+    public void reset(long seed) {
+        random.setSeed(seed);
+        bagCount = 0;
+    }
+
+    @Override
+    public int nextFigureType() {
+        if (bagCount == 0) {
+            refill();
+        }
+        return bag[--bagCount];
+    }
+
+    @Override
+    public void writeState(ByteBuffer buffer) {
+        buffer.putLong(random.state());
+        buffer.put((byte) bagCount);
+        for (int i = 0; i < bagCount; i++) {
+            buffer.put((byte) bag[i]);
+        }
+    }
+
+    @Override
+    public void readState(ByteBuffer buffer) {
+        random.setSeed(buffer.getLong());
+        bagCount = buffer.get();
+        if (bagCount < 0 || bagCount > bag.length) {
+            throw new IllegalArgumentException("Broken bag state");
+        }
+        for (int i = 0; i < bagCount; i++) {
+            bag[i] = Figure.checkFigureType(buffer.get());
+        }
+    }
+
+    private void refill() {
+        for (int i = 0; i < bag.length; i++) {
+            bag[i] = i + 1;
+        }
+        // Fisher-Yates shuffle.
+        for (int i = bag.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int type = bag[i];
+            bag[i] = bag[j];
+            bag[j] = type;
+        }
+        bagCount = bag.length;
+    }
+}
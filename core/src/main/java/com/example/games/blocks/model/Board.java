@@ -0,0 +1,584 @@
+package com.example.games.blocks.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.example.games.blocks.model.Game.CELL_IS_BORDER;
+import static com.example.games.blocks.model.Game.CELL_IS_EMPTY;
+
+/**
+ * Game field stored as an occupancy bitmask per row, plus a separate compact color plane.
+ *
+ * <p> Coordinates are the same as in the original {@code int[x][y]} field: X is in
+ * {@code 0..width + 1} and Y is in {@code 0..height + 1}, with the outer columns and rows being
+ * the border. Bit X of a row mask is set if the cell (X, Y) is occupied, border included, so
+ * collision, lock and full row checks are plain mask operations that allocate nothing. Row
+ * masks are arrays of longs, one long for up to 62 cells and their borders.
+ *
+ * <p> Rows are allocated when the first block is locked in them: rows that have always been
+ * empty share one mask and have no colors. Removing rows moves row references, not cells. So
+ * memory and the cost of most operations grow with the height of the stack of blocks, not with
+ * the area of the field, which can be huge.
+ *
+ * <p> Every row counts its blocks, updated when a figure is locked, so only the rows a figure
+ * touched are checked for being full, and all full rows are removed in one pass.
+ *
+ * <p> The skyline, the top block of every column, is kept up to date the same way, so drop
+ * distances and the heights of the stack are found without looking at the rows.
+ *
+ * <p> The range of rows changed by each of the last few versions is kept too, so a copy of the
+ * field is brought up to date by looking at the rows that changed, not at all of them.
+ */
+public class Board {
+
+    // Number of last versions whose changed rows are kept, a power of 2.
+    private static final int CHANGE_HISTORY = 16;
+
+    private final int width;
+    private final int height;
+
+    // Number of cells in a row, borders included, and of longs in a row mask.
+    private final int stride;
+    private final int wordCount;
+
+    // Shared masks of rows with only the border cells occupied, and with all cells occupied.
+    private final long[] borderRow;
+    private final long[] fullRow;
+
+    // Occupancy bitmask per row, indexed by Y. Never allocated rows are borderRow.
+    private final long[][] rows;
+
+    // Figure types per cell of a row, without the borders, indexed by Y and then X - 1.
+    // Null for rows without blocks that were never allocated.
+    private final byte[][] colors;
+
+    // Version of the field when a row last changed, indexed by Y.
+    private final int[] rowVersions;
+
+    // Number of blocks per row, indexed by Y, and in the whole field.
+    private final int[] blockCounts;
+    private int blockCount;
+
+    // Y of the top block of every column, height + 1 for empty columns, indexed by X.
+    private final int[] columnTops;
+
+    // Number of full rows below a row, used while removing full rows, indexed by Y.
+    private final int[] fullRowsBelow;
+
+    // Top row with blocks, height + 1 if there are none. Rows above it have no blocks.
+    private int topY;
+
+    // Lowest full row, 0 if there is none.
+    private int lowestFullY;
+
+    // Incremented on every change of the field contents.
+    private int version;
+
+    // Range of rows changed by each of the last versions, indexed by the version modulo
+    // CHANGE_HISTORY, valid if changeVersions holds that version.
+    private final int[] changeVersions = new int[CHANGE_HISTORY];
+    private final int[] changeTopYs = new int[CHANGE_HISTORY];
+    private final int[] changeBottomYs = new int[CHANGE_HISTORY];
+
+    /**
+     * Creates an empty field with borders.
+     *
+     * @param width  field width in cells, without borders.
+     * @param height field height in cells, without borders.
+     */
+    Board(int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Unsupported field size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.stride = width + 2;
+        this.wordCount = (stride + Long.SIZE - 1) / Long.SIZE;
+
+        borderRow = new long[wordCount];
+        setBit(borderRow, 0);
+        setBit(borderRow, width + 1);
+        fullRow = new long[wordCount];
+        for (int x = 0; x < stride; x++) {
+            setBit(fullRow, x);
+        }
+
+        rows = new long[height + 2][];
+        colors = new byte[height + 2][];
+        rowVersions = new int[height + 2];
+        blockCounts = new int[height + 2];
+        fullRowsBelow = new int[height + 2];
+        columnTops = new int[stride];
+        Arrays.fill(columnTops, 1, width + 1, height + 1);
+        Arrays.fill(rows, borderRow);
+        rows[0] = fullRow;
+        rows[height + 1] = fullRow;
+        topY = height + 1;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Returns a counter that changes whenever the contents of the field change, so a renderer
+     * can skip looking at the field while it stays the same.
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Returns the field version when a row last changed.
+     */
+    int rowVersion(int y) {
+        return rowVersions[y];
+    }
+
+    /**
+     * Returns the highest row that changed after a version, or height + 1 if none did. Only
+     * the rows from it down to {@link #changedBottomY(int)} can have changed.
+     */
+    int changedTopY(int sinceVersion) {
+        if (version - sinceVersion > CHANGE_HISTORY) {
+            return 1;
+        }
+        int top = height + 1;
+        for (int v = sinceVersion + 1; v - version <= 0; v++) {
+            int i = v & (CHANGE_HISTORY - 1);
+            if (changeVersions[i] == v) {
+                top = Math.min(top, changeTopYs[i]);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Returns the lowest row that changed after a version, or 0 if none did.
+     */
+    int changedBottomY(int sinceVersion) {
+        if (version - sinceVersion > CHANGE_HISTORY) {
+            return height;
+        }
+        int bottom = 0;
+        for (int v = sinceVersion + 1; v - version <= 0; v++) {
+            int i = v & (CHANGE_HISTORY - 1);
+            if (changeVersions[i] == v) {
+                bottom = Math.max(bottom, changeBottomYs[i]);
+            }
+        }
+        return bottom;
+    }
+
+    /**
+     * Adds rows to the range changed by the current version.
+     */
+    private void markChanged(int topY, int bottomY) {
+        if (topY > bottomY) {
+            return;
+        }
+        int i = version & (CHANGE_HISTORY - 1);
+        if (changeVersions[i] != version) {
+            changeVersions[i] = version;
+            changeTopYs[i] = topY;
+            changeBottomYs[i] = bottomY;
+        } else {
+            changeTopYs[i] = Math.min(changeTopYs[i], topY);
+            changeBottomYs[i] = Math.max(changeBottomYs[i], bottomY);
+        }
+    }
+
+    /**
+     * Returns the highest row that may have blocks, rows above it are empty.
+     */
+    int topY() {
+        return topY;
+    }
+
+    /**
+     * Empties the field in place.
+     */
+    void clear() {
+        version++;
+        markChanged(topY, height);
+        for (int y = topY; y <= height; y++) {
+            clearRow(y);
+        }
+        topY = height + 1;
+        lowestFullY = 0;
+        blockCount = 0;
+        Arrays.fill(columnTops, 1, width + 1, height + 1);
+    }
+
+    /**
+     * Overwrites this field with the contents of another field of the same size.
+     */
+    void copyFrom(Board other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("Field sizes differ");
+        }
+        version++;
+        markChanged(Math.min(topY, other.topY), height);
+        for (int y = Math.min(topY, other.topY); y <= height; y++) {
+            if (other.rows[y] == other.borderRow) {
+                clearRow(y);
+                continue;
+            }
+            System.arraycopy(other.rows[y], 0, ownRow(y), 0, wordCount);
+            if (other.colors[y] != null) {
+                System.arraycopy(other.colors[y], 0, ownColors(y), 0, width);
+            } else if (colors[y] != null) {
+                Arrays.fill(colors[y], (byte) CELL_IS_EMPTY);
+            }
+            blockCounts[y] = other.blockCounts[y];
+            rowVersions[y] = version;
+        }
+        topY = other.topY;
+        lowestFullY = other.lowestFullY;
+        blockCount = other.blockCount;
+        System.arraycopy(other.columnTops, 0, columnTops, 0, stride);
+    }
+
+    /**
+     * Returns the figure types of the cells of a row without the borders, indexed by X - 1,
+     * or null if the row is empty.
+     */
+    byte[] colorRow(int y) {
+        return colors[y];
+    }
+
+    /**
+     * Writes the cells of the rows that may have blocks, without the borders, as runs of the
+     * same cell, so the size grows with the blocks and not with the area of the stack. Runs go
+     * on from one row to the next.
+     */
+    void writeCells(ByteBuffer buffer) {
+        buffer.putInt(height + 1 - topY);
+        int runCell = CELL_IS_EMPTY;
+        int runLength = 0;
+        for (int y = topY; y <= height; y++) {
+            byte[] rowColors = colors[y];
+            if (rowColors == null || blockCounts[y] == 0) {
+                if (runCell != CELL_IS_EMPTY) {
+                    writeRun(buffer, runLength, runCell);
+                    runCell = CELL_IS_EMPTY;
+                    runLength = 0;
+                }
+                runLength += width;
+                continue;
+            }
+            for (int x = 0; x < width; x++) {
+                if (rowColors[x] != runCell) {
+                    writeRun(buffer, runLength, runCell);
+                    runCell = rowColors[x];
+                    runLength = 0;
+                }
+                runLength++;
+            }
+        }
+        writeRun(buffer, runLength, runCell);
+    }
+
+    private static void writeRun(ByteBuffer buffer, int length, int cell) {
+        if (length == 0) {
+            return;
+        }
+        while ((length & ~0x7F) != 0) {
+            buffer.put((byte) ((length & 0x7F) | 0x80));
+            length >>>= 7;
+        }
+        buffer.put((byte) length);
+        buffer.put((byte) cell);
+    }
+
+    /**
+     * Returns the most bytes {@link #writeCells(ByteBuffer)} can write: every block can start
+     * a run and end one, and a run takes at most 5 bytes of length and 1 of cell.
+     */
+    int cellsSize() {
+        return 4 + (2 * blockCount + 1) * 6;
+    }
+
+    /**
+     * Overwrites the cells of the field with cells written by {@link #writeCells(ByteBuffer)}.
+     *
+     * @throws IllegalArgumentException if a cell is not empty or a figure type, the runs do
+     *                                  not cover the rows exactly, or the top row is empty.
+     */
+    void readCells(ByteBuffer buffer) {
+        int rowCount = buffer.getInt();
+        if (rowCount < 0 || rowCount > height) {
+            throw new IllegalArgumentException("Broken field of " + rowCount + " rows");
+        }
+        clear();
+        topY = height + 1 - rowCount;
+        markChanged(topY, height);
+        int cellCount = rowCount * width;
+        int position = 0;
+        while (position < cellCount) {
+            int length = readRunLength(buffer);
+            int cell = buffer.get();
+            if (cell < CELL_IS_EMPTY || cell > Figure.FT_MAX) {
+                throw new IllegalArgumentException("Broken cell " + cell);
+            }
+            if (length <= 0 || length > cellCount - position) {
+                throw new IllegalArgumentException("Broken run of " + length + " cells");
+            }
+            if (cell == CELL_IS_EMPTY) {
+                position += length;
+                continue;
+            }
+            for (int end = position + length; position < end; position++) {
+                int y = topY + position / width;
+                int x = 1 + position % width;
+                setBit(ownRow(y), x);
+                ownColors(y)[x - 1] = (byte) cell;
+                blockCounts[y]++;
+                blockCount++;
+                columnTops[x] = Math.min(columnTops[x], y);
+                if (blockCounts[y] == width) {
+                    lowestFullY = Math.max(lowestFullY, y);
+                }
+                rowVersions[y] = version;
+            }
+        }
+        if (rowCount > 0 && blockCounts[topY] == 0) {
+            throw new IllegalArgumentException("Broken field with an empty top row");
+        }
+    }
+
+    private static int readRunLength(ByteBuffer buffer) {
+        int length = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = buffer.get();
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return length;
+            }
+        }
+        throw new IllegalArgumentException("Broken run length");
+    }
+
+    /**
+     * Returns true if the cell is neither occupied nor a border.
+     */
+    boolean isEmpty(int x, int y) {
+        return (rows[y][x >>> 6] & (1L << x)) == 0;
+    }
+
+    /**
+     * Returns the figure type the cell is filled with, {@link Game#CELL_IS_EMPTY} or
+     * {@link Game#CELL_IS_BORDER}.
+     */
+    public int cell(int x, int y) {
+        if (x == 0 || x == width + 1 || y == 0 || y == height + 1) {
+            return CELL_IS_BORDER;
+        }
+        byte[] rowColors = colors[y];
+        return rowColors == null ? CELL_IS_EMPTY : rowColors[x - 1];
+    }
+
+    /**
+     * Checks if a figure shape is within the field and over empty cells only.
+     *
+     * @param rowMasks occupied cells per row of the shape bounding box, bit 0 being its left
+     *                 column.
+     * @param boxWidth width of the shape bounding box, at most 4.
+     * @param left     X coordinate of the bounding box left column.
+     * @param top      Y coordinate of the bounding box top row.
+     */
+    boolean fits(int[] rowMasks, int boxWidth, int left, int top) {
+        if (left < 0 || left + boxWidth > stride || top < 0 || top + rowMasks.length > rows.length) {
+            return false;
+        }
+        int word = left >>> 6;
+        int shift = left & 63;
+        boolean isSplit = shift + boxWidth > Long.SIZE;
+        for (int i = 0; i < rowMasks.length; i++) {
+            long[] row = rows[top + i];
+            long mask = rowMasks[i];
+            if ((row[word] & (mask << shift)) != 0) {
+                return false;
+            }
+            // Cells of the shape past the end of the word.
+            if (isSplit && (row[word + 1] & (mask >>> (Long.SIZE - shift))) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fixes the cells of a figure shape in the field with the color of a figure type.
+     *
+     * @param rowMasks occupied cells per row of the shape bounding box, bit 0 being its left
+     *                 column.
+     * @param left     X coordinate of the bounding box left column.
+     * @param top      Y coordinate of the bounding box top row.
+     */
+    void lock(int[] rowMasks, int left, int top, int figureType) {
+        version++;
+        markChanged(top, top + rowMasks.length - 1);
+        for (int i = 0; i < rowMasks.length; i++) {
+            int y = top + i;
+            long[] row = ownRow(y);
+            byte[] rowColors = ownColors(y);
+            int mask = rowMasks[i];
+            while (mask != 0) {
+                int x = left + Integer.numberOfTrailingZeros(mask);
+                setBit(row, x);
+                rowColors[x - 1] = (byte) figureType;
+                blockCounts[y]++;
+                blockCount++;
+                columnTops[x] = Math.min(columnTops[x], y);
+                // Clears the lowest set bit.
+                mask &= mask - 1;
+            }
+            if (blockCounts[y] == width) {
+                lowestFullY = Math.max(lowestFullY, y);
+            }
+            rowVersions[y] = version;
+        }
+        topY = Math.min(topY, top);
+    }
+
+    boolean isFullRow(int y) {
+        return blockCounts[y] == width;
+    }
+
+    /**
+     * Returns the Y of the top block of a column, or height + 1 if the column is empty.
+     *
+     * @param x from 1 to {@link #width()}.
+     */
+    int columnTop(int x) {
+        return columnTops[x];
+    }
+
+    /**
+     * Returns the number of rows from the bottom of the field to the top block, 0 if the
+     * field is empty.
+     */
+    public int stackHeight() {
+        return height + 1 - topY;
+    }
+
+    /**
+     * Returns the number of blocks in the field.
+     */
+    int blockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Removes all full rows in one pass, moving the rows above them down. Rows below the
+     * lowest full one are not looked at, and nothing is looked at if no row is full.
+     *
+     * @return number of removed rows.
+     */
+    int removeFullRows() {
+        if (lowestFullY == 0) {
+            return 0;
+        }
+        updateColumnTops();
+        // Moves the rows that stay down over the full ones, and the full ones up, so their
+        // arrays can be reused as the new empty rows at the top.
+        int target = lowestFullY;
+        for (int y = lowestFullY; y >= topY; y--) {
+            if (isFullRow(y)) {
+                continue;
+            }
+            if (target != y) {
+                swapRows(y, target);
+            }
+            target--;
+        }
+        int removedCount = target + 1 - topY;
+        blockCount -= removedCount * width;
+        version++;
+        markChanged(topY, lowestFullY);
+        for (int y = topY; y <= lowestFullY; y++) {
+            rowVersions[y] = version;
+        }
+        for (int y = topY; y <= target; y++) {
+            clearRow(y);
+        }
+        topY = target + 1;
+        lowestFullY = 0;
+        return removedCount;
+    }
+
+    /**
+     * Moves the top of every column to where it will be after the full rows are removed.
+     */
+    private void updateColumnTops() {
+        fullRowsBelow[lowestFullY] = 0;
+        for (int y = lowestFullY - 1; y >= topY; y--) {
+            fullRowsBelow[y] = fullRowsBelow[y + 1] + (isFullRow(y + 1) ? 1 : 0);
+        }
+        for (int x = 1; x <= width; x++) {
+            // Full rows are never above the top of a column. If the top is in a full row,
+            // the new top is the next block down that is not in a full row.
+            int y = columnTops[x];
+            while (y <= height && (isFullRow(y) || isEmpty(x, y))) {
+                y++;
+            }
+            columnTops[x] = y > lowestFullY ? y : y + fullRowsBelow[y];
+        }
+    }
+
+    private void swapRows(int y1, int y2) {
+        long[] row = rows[y1];
+        rows[y1] = rows[y2];
+        rows[y2] = row;
+        byte[] rowColors = colors[y1];
+        colors[y1] = colors[y2];
+        colors[y2] = rowColors;
+        int blockCount = blockCounts[y1];
+        blockCounts[y1] = blockCounts[y2];
+        blockCounts[y2] = blockCount;
+    }
+
+    /**
+     * Empties a row, keeping its arrays for later use.
+     */
+    private void clearRow(int y) {
+        if (rows[y] != borderRow) {
+            System.arraycopy(borderRow, 0, rows[y], 0, wordCount);
+        }
+        if (colors[y] != null) {
+            Arrays.fill(colors[y], (byte) CELL_IS_EMPTY);
+        }
+        blockCounts[y] = 0;
+        rowVersions[y] = version;
+    }
+
+    /**
+     * Returns the mask of a row, allocating it if the row shares the empty row mask.
+     */
+    private long[] ownRow(int y) {
+        long[] row = rows[y];
+        if (row == borderRow) {
+            row = borderRow.clone();
+            rows[y] = row;
+        }
+        return row;
+    }
+
+    private byte[] ownColors(int y) {
+        byte[] rowColors = colors[y];
+        if (rowColors == null) {
+            rowColors = new byte[width];
+            colors[y] = rowColors;
+        }
+        return rowColors;
+    }
+
+    private static void setBit(long[] row, int x) {
+        row[x >>> 6] |= 1L << x;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.games.blocks.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fast, seedable, non-cryptographic pseudo random generator (SplitMix64).
+ *
+ * <p> The whole generator state is one long, so games are reproducible from their seed.
+ * Not thread safe.
+ */
+public final class FastRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // Makes seeds of generators created at the same nanoTime differ.
+    private static final AtomicLong seedUniquifier = new AtomicLong();
+
+    private long state;
+
+    public FastRandom(long seed) {
+        state = seed;
+    }
+
+    /**
+     * Returns a seed that differs between calls, for games that are not started from a given
+     * seed.
+     */
+    public static long randomSeed() {
+        return mix(System.nanoTime() + seedUniquifier.addAndGet(GOLDEN_GAMMA));
+    }
+
+    public void setSeed(long seed) {
+        state = seed;
+    }
+
+    /**
+     * Returns the whole generator state. Setting it as the seed continues the same sequence.
+     */
+    long state() {
+        return state;
+    }
+
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+
+    /**
+     * Returns a uniformly distributed value from 0 (inclusive) to bound (exclusive).
+     *
+     * <p> Uses multiply and shift instead of a biased modulo, with rejection of the few
+     * values that would make the result non-uniform.
+     *
+     * @param bound upper bound, must be positive.
+     */
+    public int nextInt(int bound) {
+        long product = (nextLong() >>> 32) * bound;
+        long low = product & 0xFFFFFFFFL;
+        if (low < bound) {
+            long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold) {
+                product = (nextLong() >>> 32) * bound;
+                low = product & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (product >>> 32);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
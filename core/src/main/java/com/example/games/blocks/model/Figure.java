@@ -0,0 +1,261 @@
+package com.example.games.blocks.model;
+
+/**
+ * Representation of one block 'figure' on the game field.
+ */
+public class Figure {
+
+    // Figure dimension. All blocks have 4 elements.
+    public static final int FIGURE_SIZE = 4;
+
+    static final int FIGURE_INITIAL_Y = 1;
+
+    // Figure types.
+    public static final int FT_BRICK = 1;
+    public static final int FT_G_LEFT = 2;
+    public static final int FT_G_RIGHT = 3;
+    public static final int FT_CUBE = 4;
+    public static final int FT_Z_LEFT = 5;
+    public static final int FT_Z_RIGHT = 6;
+    public static final int FT_PIN = 7;
+    public static final int FT_MAX = 7;
+
+    // Type of the figure that this instance represents, until it is reset to a new one.
+    private int figureType;
+
+    // Current rotation state for this instance, an index into the FigureShapes tables.
+    int rotationStateNumber = 0;
+
+    // Position of the figure anchor on the game field. The parts of the figure are placed at
+    // the offsets of the current rotation state from it.
+    private int anchorX;
+    private int anchorY;
+
+    // Pointer to the parent Game field to simplify methods signatures.
+    Board gameField;
+
+    // Anchor Y where this figure lands if dropped, valid for the rotation state, anchor X
+    // and field version it was found for. ghostRotation is -1 if it was never found.
+    private int ghostRotation = -1;
+    private int ghostX;
+    private int ghostFieldVersion;
+    private int ghostY;
+
+    /**
+     * Creates a new Figure of a given figure type and puts it into the top of game field,
+     * in the middle.
+     *
+     * @param gameField  reference to the game field.
+     * @param figureType type of the figure to be created.
+     */
+    Figure(Board gameField, int figureType) {
+        reset(gameField, figureType);
+    }
+
+    /**
+     * Turns this Figure into a new one of a given figure type at the top of game field, so
+     * that a game can reuse the same instances for all its figures.
+     *
+     * @param gameField  reference to the game field.
+     * @param figureType type of the new figure.
+     */
+    void reset(Board gameField, int figureType) {
+        this.figureType = figureType;
+        this.gameField = gameField;
+        anchorX = initialX(gameField.width());
+        anchorY = FIGURE_INITIAL_Y;
+        rotationStateNumber = 0;
+        ghostRotation = -1;
+    }
+
+    /**
+     * Returns the anchor Y where this Figure lands if it is dropped now, e.g. to show its
+     * ghost. Found again only after the rotation state, the column or the settled blocks
+     * change: falling straight down does not change where the figure lands.
+     */
+    int ghostY() {
+        if (ghostRotation != rotationStateNumber || ghostX != anchorX
+                || ghostFieldVersion != gameField.version()) {
+            ghostY = anchorY + FigureShapes.dropDistance(
+                    gameField, figureType, rotationStateNumber, anchorX, anchorY);
+            ghostRotation = rotationStateNumber;
+            ghostX = anchorX;
+            ghostFieldVersion = gameField.version();
+        }
+        return ghostY;
+    }
+
+    /**
+     * Returns the X coordinate of the anchor of new figures, which puts them in the middle of
+     * the top row.
+     */
+    static int initialX(int fieldWidth) {
+        return (fieldWidth - FIGURE_SIZE) / 2 + 1;
+    }
+
+    /**
+     * Moves this Figure to the position and rotation state of another Figure of the same type.
+     */
+    void copyFrom(Figure other) {
+        if (other.figureType != figureType) {
+            throw new IllegalArgumentException("Figure types differ");
+        }
+        anchorX = other.anchorX;
+        anchorY = other.anchorY;
+        rotationStateNumber = other.rotationStateNumber;
+    }
+
+    /**
+     * Moves this Figure to a position and rotation state, e.g. a restored one.
+     *
+     * @throws IllegalArgumentException if the figure does not fit there.
+     */
+    void moveTo(int rotation, int x, int y) {
+        if (rotation < 0 || rotation >= FigureShapes.ORIENTATION_COUNT[figureType]
+                || !fits(rotation, x, y)) {
+            throw new IllegalArgumentException("Figure does not fit at " + x + ", " + y);
+        }
+        anchorX = x;
+        anchorY = y;
+        rotationStateNumber = rotation;
+    }
+
+    /**
+     * Returns the figure type if it is a valid one.
+     *
+     * @throws IllegalArgumentException otherwise.
+     */
+    static int checkFigureType(int figureType) {
+        if (figureType < FT_BRICK || figureType > FT_MAX) {
+            throw new IllegalArgumentException("Unknown figure type " + figureType);
+        }
+        return figureType;
+    }
+
+    /**
+     * Determines if the game is over by checking if this Figure is positioned over already
+     * occupied cells of the game field.
+     */
+    boolean isGameOver() {
+        return !fits(rotationStateNumber, anchorX, anchorY);
+    }
+
+    /**
+     * Returns this Figure type.
+     */
+    public int figureType() {
+        return figureType;
+    }
+
+    /**
+     * Returns X coordinate of a given part of this Figure on the game field.
+     *
+     * @param i index of the part, from 0 to {@link #FIGURE_SIZE} - 1.
+     */
+    public int cellX(int i) {
+        return anchorX + FigureShapes.DX[figureType][rotationStateNumber][i];
+    }
+
+    /**
+     * Returns Y coordinate of a given part of this Figure on the game field.
+     *
+     * @param i index of the part, from 0 to {@link #FIGURE_SIZE} - 1.
+     */
+    public int cellY(int i) {
+        return anchorY + FigureShapes.DY[figureType][rotationStateNumber][i];
+    }
+
+    /**
+     * Moves this Figure one position to the left if possible.
+     */
+    void left() {
+        if (fits(rotationStateNumber, anchorX - 1, anchorY)) {
+            anchorX--;
+        }
+    }
+
+    /**
+     * Moves this Figure one position to the right if possible.
+     */
+    void right() {
+        if (fits(rotationStateNumber, anchorX + 1, anchorY)) {
+            anchorX++;
+        }
+    }
+
+    /**
+     * Moves this Figure one position down if possible.
+     * If it can not be moved down, transfers this Figure current position to the game field.
+     */
+    boolean maybeOneStepDown() {
+        // Check if there is space below.
+        boolean canGoDown = fits(rotationStateNumber, anchorX, anchorY + 1);
+
+        if (canGoDown) {
+            anchorY++;
+        } else {
+            // Fix in the field at current position.
+            lock();
+        }
+
+        return canGoDown;
+    }
+
+    /**
+     * Returns true if this Figure can move one position down, without moving it.
+     */
+    boolean canGoDown() {
+        return fits(rotationStateNumber, anchorX, anchorY + 1);
+    }
+
+    /**
+     * 'Drops' this Figure down on top of the first 'occupied' cell.
+     *
+     * @return number of lines that this Figure was moved down, used for scoring.
+     */
+    int drop() {
+        // Calculate how high is the vertical drop.
+        int droppedLinesCount = FigureShapes.dropDistance(
+                gameField, figureType, rotationStateNumber, anchorX, anchorY);
+
+        // Drop.
+        anchorY += droppedLinesCount;
+
+        // Fix the dropped figure position to the field.
+        lock();
+
+        return droppedLinesCount;
+    }
+
+    /**
+     * Rotates this Figure if possible.
+     */
+    void rotate() {
+        int nextRotationStateNumber = FigureShapes.nextRotation(figureType, rotationStateNumber);
+        if (fits(nextRotationStateNumber, anchorX, anchorY)) {
+            rotationStateNumber = nextRotationStateNumber;
+        }
+    }
+
+    /**
+     * Returns X coordinate of the anchor that the parts of this Figure are placed around.
+     */
+    int anchorX() {
+        return anchorX;
+    }
+
+    /**
+     * Returns Y coordinate of the anchor that the parts of this Figure are placed around.
+     */
+    int anchorY() {
+        return anchorY;
+    }
+
+    private boolean fits(int rotation, int x, int y) {
+        return FigureShapes.fits(gameField, figureType, rotation, x, y);
+    }
+
+    private void lock() {
+        FigureShapes.lock(gameField, figureType, rotationStateNumber, anchorX, anchorY);
+    }
+}
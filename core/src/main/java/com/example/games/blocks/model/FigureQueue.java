@@ -0,0 +1,68 @@
+package com.example.games.blocks.model;
+
+/**
+ * Fixed size lookahead queue of upcoming figure types, kept full from a
+ * {@link FigureRandomizer}. Taking a type from the queue generates one new type, so previews
+ * of several upcoming figures cost nothing extra.
+ */
+class FigureQueue {
+
+    // Upcoming figure types, used as a ring buffer starting at head.
+    private final int[] figureTypes;
+    private int head;
+
+    private FigureRandomizer randomizer;
+
+    FigureQueue(int size) {
+        figureTypes = new int[size];
+    }
+
+    /**
+     * Restarts the randomizer with a seed and fills the queue from it.
+     */
+    void reset(FigureRandomizer randomizer, long seed) {
+        this.randomizer = randomizer;
+        randomizer.reset(seed);
+        for (int i = 0; i < figureTypes.length; i++) {
+            figureTypes[i] = randomizer.nextFigureType();
+        }
+        head = 0;
+    }
+
+    /**
+     * Removes the first upcoming figure type from the queue and returns it.
+     */
+    int take() {
+        int figureType = figureTypes[head];
+        figureTypes[head] = randomizer.nextFigureType();
+        head = (head + 1) % figureTypes.length;
+        return figureType;
+    }
+
+    /**
+     * Returns an upcoming figure type without removing it.
+     *
+     * @param index position in the queue, 0 is the type that {@link #take()} returns next.
+     */
+    int peek(int index) {
+        return figureTypes[(head + index) % figureTypes.length];
+    }
+
+    /**
+     * Continues from a restored state: a randomizer positioned after the given upcoming types.
+     *
+     * @param figureTypes upcoming types, the first one being the next to take.
+     */
+    void restore(FigureRandomizer randomizer, int[] figureTypes) {
+        if (figureTypes.length != this.figureTypes.length) {
+            throw new IllegalArgumentException("Queue sizes differ");
+        }
+        this.randomizer = randomizer;
+        System.arraycopy(figureTypes, 0, this.figureTypes, 0, figureTypes.length);
+        head = 0;
+    }
+
+    int size() {
+        return figureTypes.length;
+    }
+}
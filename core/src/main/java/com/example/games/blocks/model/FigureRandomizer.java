@@ -0,0 +1,34 @@
+package com.example.games.blocks.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Strategy of choosing the types of the figures to play.
+ */
+public interface FigureRandomizer {
+
+    /**
+     * Restarts the sequence of figure types. The same seed gives the same sequence.
+     */
+    void reset(long seed);
+
+    /**
+     * Returns the type of the next figure, from {@link Figure#FT_BRICK} to
+     * {@link Figure#FT_MAX}.
+     */
+    int nextFigureType();
+
+    /**
+     * Writes the position in the sequence, so that {@link #readState(ByteBuffer)} can go on
+     * from there, e.g. in a game restored from a snapshot. Only games with the randomizers of
+     * this package can be saved, see {@link Game#saveState()}.
+     */
+    void writeState(ByteBuffer buffer);
+
+    /**
+     * Continues the sequence from a position written by {@link #writeState(ByteBuffer)}.
+     *
+     * @throws IllegalArgumentException if the state is broken.
+     */
+    void readState(ByteBuffer buffer);
+}
@@ -0,0 +1,255 @@
+package com.example.games.blocks.model;
+
+import java.util.Arrays;
+
+import static com.example.games.blocks.model.Figure.FIGURE_SIZE;
+import static com.example.games.blocks.model.Figure.FT_MAX;
+
+/**
+ * Precomputed table of all orientations (rotation states) of all figure types.
+ *
+ * <p> Every orientation is stored as the offsets of the figure parts from the figure anchor,
+ * and as a compact bitmask per row of its bounding box, so moving, rotating and collision
+ * checks are table lookups plus mask tests.
+ *
+ * <p> The table is derived once from the initial shapes and the rotation rules below. Arrays
+ * are indexed by [figure type][rotation state] and must not be modified.
+ */
+final class FigureShapes {
+
+    // Number of rotation states, indexed by figure type.
+    static final int[] ORIENTATION_COUNT = new int[FT_MAX + 1];
+
+    // Offsets of the figure parts from the anchor, indexed by [type][rotation][part].
+    static final int[][][] DX = new int[FT_MAX + 1][][];
+    static final int[][][] DY = new int[FT_MAX + 1][][];
+
+    // Bounding box: offset of its top left cell from the anchor, and its size.
+    static final int[][] BOX_LEFT = new int[FT_MAX + 1][];
+    static final int[][] BOX_TOP = new int[FT_MAX + 1][];
+    static final int[][] BOX_WIDTH = new int[FT_MAX + 1][];
+
+    // Occupied cells per row of the bounding box, bit 0 is the box left column,
+    // indexed by [type][rotation][row].
+    static final int[][][] ROW_MASKS = new int[FT_MAX + 1][][];
+
+    // Offset of the lowest figure part in every column of the bounding box from the anchor,
+    // indexed by [type][rotation][column].
+    static final int[][][] COLUMN_BOTTOMS = new int[FT_MAX + 1][][];
+
+    /**
+     * Initial shapes, offsets of the figure parts from the anchor, indexed by figure type.
+     */
+    private static final int[][] SPAWN_DX = {
+            {},
+            {0, 1, 2, 3}, // FT_BRICK
+            {1, 1, 2, 3}, // FT_G_LEFT
+            {0, 1, 2, 2}, // FT_G_RIGHT
+            {1, 1, 2, 2}, // FT_CUBE
+            {0, 1, 1, 2}, // FT_Z_LEFT
+            {1, 2, 2, 3}, // FT_Z_RIGHT
+            {2, 1, 2, 3}, // FT_PIN
+    };
+    private static final int[][] SPAWN_DY = {
+            {},
+            {0, 0, 0, 0}, // FT_BRICK
+            {1, 0, 0, 0}, // FT_G_LEFT
+            {0, 0, 0, 1}, // FT_G_RIGHT
+            {1, 0, 0, 1}, // FT_CUBE
+            {0, 0, 1, 1}, // FT_Z_LEFT
+            {1, 1, 0, 0}, // FT_Z_RIGHT
+            {1, 0, 0, 0}, // FT_PIN
+    };
+
+    /**
+     * Rotation rules for X & Y coordinates for each figure type: increments of the part
+     * coordinates when rotating from the rotation state at that index to the next one.
+     */
+
+    /*-----------------------------------------------------------*/
+    private static final int[][] ROTATE_G_LEFT_X_INCREMENTS = {
+            {+1, 0, -1, -2}, {+1, +2, +1, 0}, {-1, 0, +1, +2}, {-1, -2, -1, 0}
+    };
+    private static final int[][] ROTATE_G_LEFT_Y_INCREMENTS = {
+            {0, +1, 0, -1}, {-1, 0, +1, +2}, {-1, -2, -1, 0}, {+2, +1, 0, -1}
+    };
+    /*-----------------------------------------------------------*/
+    private static final int[][] ROTATE_G_RIGHT_X_INCREMENTS = {
+            {0, -1, -2, -1}, {+2, +1, 0, -1}, {0, +1, +2, +1}, {-2, -1, 0, +1}
+    };
+    private static final int[][] ROTATE_G_RIGHT_Y_INCREMENTS = {
+            {+1, 0, -1, -2}, {0, +1, +2, +1}, {-2, -1, 0, +1}, {+1, 0, -1, 0}
+    };
+    /*-----------------------------------------------------------*/
+    private static final int[][] ROTATE_BRICK_X_INCREMENTS = {
+            {+2, +1, 0, -1}, {-2, -1, 0, +1}
+    };
+    private static final int[][] ROTATE_BRICK_Y_INCREMENTS = {
+            {-2, -1, 0, +1}, {+2, +1, 0, -1}
+    };
+    /*-----------------------------------------------------------*/
+    private static final int[][] ROTATE_CUBE_INCREMENTS = {
+            {0, 0, 0, 0}
+    };
+    /*-----------------------------------------------------------*/
+    private static final int[][] ROTATE_Z_LEFT_X_INCREMENTS = {
+            {+2, +1, 0, -1}, {-2, -1, 0, +1}
+    };
+    private static final int[][] ROTATE_Z_LEFT_Y_INCREMENTS = {
+            {-1, 0, -1, 0}, {+1, 0, +1, 0}
+    };
+    /*-----------------------------------------------------------*/
+    private static final int[][] ROTATE_Z_RIGHT_X_INCREMENTS = {
+            {+1, 0, +1, 0}, {-1, 0, -1, 0}
+    };
+    private static final int[][] ROTATE_Z_RIGHT_Y_INCREMENTS = {
+            {-2, -1, 0, +1}, {+2, +1, 0, -1}
+    };
+    /*-----------------------------------------------------------*/
+    private static final int[][] ROTATE_PIN_X_INCREMENTS = {
+            {+1, +1, 0, -1}, {-1, +1, 0, -1}, {-1, -1, 0, +1}, {+1, -1, 0, +1}
+    };
+    private static final int[][] ROTATE_PIN_Y_INCREMENTS = {
+            {-1, +1, 0, -1}, {0, 0, +1, +2}, {0, -2, -1, 0}, {+1, +1, 0, -1}
+    };
+
+    private static final int[][][] ROTATE_X_INCREMENTS = {
+            null,
+            ROTATE_BRICK_X_INCREMENTS,
+            ROTATE_G_LEFT_X_INCREMENTS,
+            ROTATE_G_RIGHT_X_INCREMENTS,
+            ROTATE_CUBE_INCREMENTS,
+            ROTATE_Z_LEFT_X_INCREMENTS,
+            ROTATE_Z_RIGHT_X_INCREMENTS,
+            ROTATE_PIN_X_INCREMENTS,
+    };
+    private static final int[][][] ROTATE_Y_INCREMENTS = {
+            null,
+            ROTATE_BRICK_Y_INCREMENTS,
+            ROTATE_G_LEFT_Y_INCREMENTS,
+            ROTATE_G_RIGHT_Y_INCREMENTS,
+            ROTATE_CUBE_INCREMENTS,
+            ROTATE_Z_LEFT_Y_INCREMENTS,
+            ROTATE_Z_RIGHT_Y_INCREMENTS,
+            ROTATE_PIN_Y_INCREMENTS,
+    };
+
+    static {
+        for (int type = 1; type <= FT_MAX; type++) {
+            int count = ROTATE_X_INCREMENTS[type].length;
+            ORIENTATION_COUNT[type] = count;
+            DX[type] = new int[count][];
+            DY[type] = new int[count][];
+            BOX_LEFT[type] = new int[count];
+            BOX_TOP[type] = new int[count];
+            BOX_WIDTH[type] = new int[count];
+            COLUMN_BOTTOMS[type] = new int[count][];
+            ROW_MASKS[type] = new int[count][];
+
+            int[] dx = SPAWN_DX[type].clone();
+            int[] dy = SPAWN_DY[type].clone();
+            for (int rotation = 0; rotation < count; rotation++) {
+                DX[type][rotation] = dx.clone();
+                DY[type][rotation] = dy.clone();
+                initBox(type, rotation);
+                for (int i = 0; i < FIGURE_SIZE; i++) {
+                    dx[i] += ROTATE_X_INCREMENTS[type][rotation][i];
+                    dy[i] += ROTATE_Y_INCREMENTS[type][rotation][i];
+                }
+            }
+        }
+    }
+
+    private FigureShapes() {
+    }
+
+    /**
+     * Returns the rotation state that follows a given one.
+     */
+    static int nextRotation(int figureType, int rotation) {
+        rotation++;
+        return rotation == ORIENTATION_COUNT[figureType] ? 0 : rotation;
+    }
+
+    /**
+     * Checks if a figure in a given rotation state, with its anchor at (x, y), is within the
+     * field and over empty cells only.
+     */
+    static boolean fits(Board board, int figureType, int rotation, int x, int y) {
+        return board.fits(ROW_MASKS[figureType][rotation], BOX_WIDTH[figureType][rotation],
+                x + BOX_LEFT[figureType][rotation], y + BOX_TOP[figureType][rotation]);
+    }
+
+    /**
+     * Fixes a figure in a given rotation state, with its anchor at (x, y), in the field.
+     */
+    static void lock(Board board, int figureType, int rotation, int x, int y) {
+        board.lock(ROW_MASKS[figureType][rotation],
+                x + BOX_LEFT[figureType][rotation], y + BOX_TOP[figureType][rotation],
+                figureType);
+    }
+
+    /**
+     * Returns how many rows a figure can fall from its position before it lands.
+     */
+    static int dropDistance(Board board, int figureType, int rotation, int x, int y) {
+        int[] bottoms = COLUMN_BOTTOMS[figureType][rotation];
+        int left = x + BOX_LEFT[figureType][rotation];
+        int distance = Integer.MAX_VALUE;
+        for (int i = 0; i < bottoms.length; i++) {
+            int gap = board.columnTop(left + i) - 1 - (y + bottoms[i]);
+            if (gap < 0) {
+                // Under an overhang, where the skyline does not tell.
+                return probeDropDistance(board, figureType, rotation, x, y);
+            }
+            distance = Math.min(distance, gap);
+        }
+        return distance;
+    }
+
+    /**
+     * Finds the drop distance by moving the figure down row by row, from the top of the stack.
+     */
+    private static int probeDropDistance(Board board, int figureType, int rotation, int x,
+                                         int y) {
+        // Falls through the empty rows above the stack at once.
+        int lowestEmptyY = board.topY() - BOX_TOP[figureType][rotation]
+                - ROW_MASKS[figureType][rotation].length;
+        int distance = Math.max(0, lowestEmptyY - y);
+        while (fits(board, figureType, rotation, x, y + distance + 1)) {
+            distance++;
+        }
+        return distance;
+    }
+
+    private static void initBox(int type, int rotation) {
+        int[] dx = DX[type][rotation];
+        int[] dy = DY[type][rotation];
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < FIGURE_SIZE; i++) {
+            left = Math.min(left, dx[i]);
+            top = Math.min(top, dy[i]);
+            right = Math.max(right, dx[i]);
+            bottom = Math.max(bottom, dy[i]);
+        }
+        BOX_LEFT[type][rotation] = left;
+        BOX_TOP[type][rotation] = top;
+        BOX_WIDTH[type][rotation] = right - left + 1;
+
+        int[] bottoms = new int[right - left + 1];
+        Arrays.fill(bottoms, Integer.MIN_VALUE);
+        for (int i = 0; i < FIGURE_SIZE; i++) {
+            bottoms[dx[i] - left] = Math.max(bottoms[dx[i] - left], dy[i]);
+        }
+        COLUMN_BOTTOMS[type][rotation] = bottoms;
+
+        int[] rowMasks = new int[bottom - top + 1];
+        for (int i = 0; i < FIGURE_SIZE; i++) {
+            rowMasks[dy[i] - top] |= 1 << (dx[i] - left);
+        }
+        ROW_MASKS[type][rotation] = rowMasks;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.games.blocks.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free hand-off of frames from the game logic to one render thread (triple buffering).
+ *
+ * <p> The game fills the back buffer and publishes it with one atomic swap, without waiting
+ * for the renderer. The renderer swaps out the most recently published frame, skipping the
+ * ones it had no time for, and owns it until it takes the next one.
+ */
+public final class FrameExchange {
+
+    // Low bits of 'middle' are the index of the buffer, FRESH is set if it is not taken yet.
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final FrameSnapshot[] buffers = {
+            new FrameSnapshot(), new FrameSnapshot(), new FrameSnapshot()};
+
+    // The last published frame, exchanged between the producer and the consumer.
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    // Buffer being filled. Used by the producer only; publishing is serialized by the Game lock.
+    private int back = 0;
+    private long sequence;
+
+    // Buffer being rendered. Used by the consumer only.
+    private int front = 2;
+
+    // Render thread waiting for a frame, if any.
+    private volatile Thread consumer;
+
+    /**
+     * Returns the buffer for the producer to fill in.
+     */
+    FrameSnapshot backBuffer() {
+        return buffers[back];
+    }
+
+    /**
+     * Publishes the filled back buffer as the latest frame and wakes up the consumer.
+     */
+    void publish() {
+        buffers[back].sequence = ++sequence;
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+        Thread waiting = consumer;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    /**
+     * Takes the latest published frame.
+     *
+     * @return the frame, or null if no new frame was published since the last call.
+     */
+    public FrameSnapshot pollLatest() {
+        if ((middle.get() & FRESH) == 0) {
+            return null;
+        }
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return buffers[front];
+    }
+
+    /**
+     * Waits for a new frame and takes the latest one.
+     *
+     * @throws InterruptedException if the waiting thread was interrupted.
+     */
+    public FrameSnapshot awaitLatest() throws InterruptedException {
+        consumer = Thread.currentThread();
+        while (true) {
+            FrameSnapshot frame = pollLatest();
+            if (frame != null) {
+                return frame;
+            }
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
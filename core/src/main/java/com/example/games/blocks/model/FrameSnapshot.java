@@ -0,0 +1,302 @@
+package com.example.games.blocks.model;
+
+import java.util.Arrays;
+
+import static com.example.games.blocks.model.Figure.FIGURE_SIZE;
+
+/**
+ * State of the game needed to paint one frame: settled blocks, the current figure, the
+ * 'next' figure preview, the hint and the ghost.
+ *
+ * <p> Snapshots are reused buffers of a {@link FrameExchange}. The renderer that got a
+ * snapshot owns it until it asks for the next one, and the game never changes it meanwhile.
+ */
+public final class FrameSnapshot {
+
+    private int fieldWidth;
+    private int fieldHeight;
+
+    // Settled blocks without the borders, indexed by Y and X - 1, null for rows that have
+    // never had blocks.
+    private byte[][] cells = new byte[0][];
+
+    // Identify the game field and its contents that cells were copied from.
+    private int fieldGeneration = -1;
+    private int fieldVersion;
+
+    // Field version of the previous capture, and the range of rows that changed since then.
+    private int previousFieldVersion;
+    private int changedTopY;
+    private int changedBottomY;
+
+    // Current figure, figureType is 0 if there is none.
+    private int figureType;
+    private final int[] figureX = new int[FIGURE_SIZE];
+    private final int[] figureY = new int[FIGURE_SIZE];
+
+    // 'Next' figure, as offsets of its parts from the top left of its initial position,
+    // nextFigureType is 0 if it is not shown.
+    private int nextFigureType;
+    private final int[] nextX = new int[FIGURE_SIZE];
+    private final int[] nextY = new int[FIGURE_SIZE];
+
+    // Best placement of the current figure, hintFigureType is 0 if it is not shown.
+    private int hintFigureType;
+    private final int[] hintX = new int[FIGURE_SIZE];
+    private final int[] hintY = new int[FIGURE_SIZE];
+
+    // Where the current figure lands if dropped, ghostFigureType is 0 if it is not shown.
+    private int ghostFigureType;
+    private final int[] ghostX = new int[FIGURE_SIZE];
+    private final int[] ghostY = new int[FIGURE_SIZE];
+
+    // Post time of the earliest input command first shown in this frame, if hasInput is set.
+    private boolean hasInput;
+    private long inputNanos;
+
+    // Number of the frame, increasing with every published frame.
+    long sequence;
+
+    /**
+     * Copies the rows of settled blocks that changed since this snapshot was last captured.
+     *
+     * @param fieldGeneration changes whenever the game starts on a new field.
+     */
+    void captureField(Board field, int fieldGeneration) {
+        boolean isNewField = this.fieldGeneration != fieldGeneration;
+        if (!isNewField && fieldVersion == field.version()) {
+            return;
+        }
+        if (fieldWidth != field.width() || fieldHeight != field.height()) {
+            fieldWidth = field.width();
+            fieldHeight = field.height();
+            cells = new byte[fieldHeight + 1][];
+        }
+        if (isNewField) {
+            changedTopY = 1;
+            changedBottomY = fieldHeight;
+            for (int y = 1; y <= fieldHeight; y++) {
+                captureRow(field.colorRow(y), y);
+            }
+        } else {
+            // Only the rows the changes touched, e.g. the 4 rows of a locked figure.
+            changedTopY = field.changedTopY(fieldVersion);
+            changedBottomY = field.changedBottomY(fieldVersion);
+            for (int y = changedTopY; y <= changedBottomY; y++) {
+                if (field.rowVersion(y) - fieldVersion > 0) {
+                    captureRow(field.colorRow(y), y);
+                }
+            }
+        }
+        this.previousFieldVersion = fieldVersion;
+        this.fieldGeneration = fieldGeneration;
+        this.fieldVersion = field.version();
+    }
+
+    private void captureRow(byte[] fieldRow, int y) {
+        if (fieldRow != null) {
+            if (cells[y] == null) {
+                cells[y] = new byte[fieldWidth];
+            }
+            System.arraycopy(fieldRow, 0, cells[y], 0, fieldWidth);
+        } else if (cells[y] != null) {
+            Arrays.fill(cells[y], (byte) Game.CELL_IS_EMPTY);
+        }
+    }
+
+    void captureFigure(Figure figure) {
+        figureType = captureFigure(figure, figureX, figureY);
+    }
+
+    void captureNext(Figure figure) {
+        nextFigureType = captureFigure(figure, nextX, nextY);
+        for (int i = 0; i < FIGURE_SIZE && figure != null; i++) {
+            nextX[i] -= figure.anchorX();
+            nextY[i] -= figure.anchorY();
+        }
+    }
+
+    /**
+     * Captures the hint: a figure in a given rotation state, with its anchor at (x, y).
+     *
+     * @param figureType type of the figure, 0 if no hint is shown.
+     */
+    void captureHint(int figureType, int rotation, int x, int y) {
+        hintFigureType = captureShape(figureType, rotation, x, y, hintX, hintY);
+    }
+
+    /**
+     * Captures the ghost: the current figure where it lands if dropped, with its anchor at
+     * (x, y).
+     *
+     * @param figureType type of the figure, 0 if no ghost is shown.
+     */
+    void captureGhost(int figureType, int rotation, int x, int y) {
+        ghostFigureType = captureShape(figureType, rotation, x, y, ghostX, ghostY);
+    }
+
+    private static int captureShape(int figureType, int rotation, int x, int y,
+                                    int[] xs, int[] ys) {
+        for (int i = 0; i < FIGURE_SIZE && figureType != 0; i++) {
+            xs[i] = x + FigureShapes.DX[figureType][rotation][i];
+            ys[i] = y + FigureShapes.DY[figureType][rotation][i];
+        }
+        return figureType;
+    }
+
+    /**
+     * Captures the post time of the earliest input command first shown in this frame, for
+     * {@link GameMetrics#inputToFrame()}.
+     */
+    void captureInput(boolean hasInput, long inputNanos) {
+        this.hasInput = hasInput;
+        this.inputNanos = inputNanos;
+    }
+
+    private static int captureFigure(Figure figure, int[] xs, int[] ys) {
+        if (figure == null) {
+            return 0;
+        }
+        for (int i = 0; i < FIGURE_SIZE; i++) {
+            xs[i] = figure.cellX(i);
+            ys[i] = figure.cellY(i);
+        }
+        return figure.figureType();
+    }
+
+    boolean hasInput() {
+        return hasInput;
+    }
+
+    long inputNanos() {
+        return inputNanos;
+    }
+
+    public int fieldWidth() {
+        return fieldWidth;
+    }
+
+    public int fieldHeight() {
+        return fieldHeight;
+    }
+
+    /**
+     * Returns the figure type a cell of the field is filled with, or {@link Game#CELL_IS_EMPTY}.
+     *
+     * @param x from 1 to {@link #fieldWidth()}.
+     * @param y from 1 to {@link #fieldHeight()}.
+     */
+    public int cell(int x, int y) {
+        byte[] row = cells[y];
+        return row == null ? Game.CELL_IS_EMPTY : row[x - 1];
+    }
+
+    /**
+     * Returns a number that changes when a new game starts on a new field.
+     */
+    public int fieldGeneration() {
+        return fieldGeneration;
+    }
+
+    /**
+     * Returns a number that changes whenever the settled blocks of the field change.
+     */
+    public int fieldVersion() {
+        return fieldVersion;
+    }
+
+    /**
+     * Returns the field version this snapshot had before, on the same field. Since then, only
+     * the rows from {@link #changedTopY()} to {@link #changedBottomY()} changed, so a renderer
+     * that shows that version or a later one only has to look at them.
+     */
+    public int previousFieldVersion() {
+        return previousFieldVersion;
+    }
+
+    /**
+     * Returns the highest row that changed since {@link #previousFieldVersion()}, or
+     * fieldHeight() + 1 if none did.
+     */
+    public int changedTopY() {
+        return changedTopY;
+    }
+
+    /**
+     * Returns the lowest row that changed since {@link #previousFieldVersion()}, or 0 if none
+     * did.
+     */
+    public int changedBottomY() {
+        return changedBottomY;
+    }
+
+    /**
+     * Returns the current figure type, 0 if there is no current figure.
+     */
+    public int figureType() {
+        return figureType;
+    }
+
+    public int figureX(int i) {
+        return figureX[i];
+    }
+
+    public int figureY(int i) {
+        return figureY[i];
+    }
+
+    /**
+     * Returns the 'next' figure type, 0 if it is not shown.
+     */
+    public int nextFigureType() {
+        return nextFigureType;
+    }
+
+    /**
+     * Returns the column of a part of the 'next' figure, from 0 to {@link Figure#FIGURE_SIZE} - 1.
+     */
+    public int nextX(int i) {
+        return nextX[i];
+    }
+
+    /**
+     * Returns the row of a part of the 'next' figure, 0 or 1.
+     */
+    public int nextY(int i) {
+        return nextY[i];
+    }
+
+    /**
+     * Returns the type of the figure shown as a hint, 0 if there is no hint.
+     */
+    public int hintFigureType() {
+        return hintFigureType;
+    }
+
+    public int hintX(int i) {
+        return hintX[i];
+    }
+
+    public int hintY(int i) {
+        return hintY[i];
+    }
+
+    /**
+     * Returns the type of the figure shown as a ghost, 0 if there is no ghost.
+     */
+    public int ghostFigureType() {
+        return ghostFigureType;
+    }
+
+    public int ghostX(int i) {
+        return ghostX[i];
+    }
+
+    public int ghostY(int i) {
+        return ghostY[i];
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+}
@@ -0,0 +1,1211 @@
+package com.example.games.blocks.model;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Game logic. Painting of the game surfaces is delegated to a {@link GameRenderer}.
+ *
+ * <p> Using 'synchronized' on public methods for simplicity.
+ */
+public class Game {
+    // Field dimensions defined in block parts.
+    public static final int DEFAULT_FIELD_WIDTH = 10;
+    public static final int DEFAULT_FIELD_HEIGHT = 20;
+    public static final int MIN_FIELD_WIDTH = Figure.FIGURE_SIZE;
+    public static final int MIN_FIELD_HEIGHT = 2 * Figure.FIGURE_SIZE;
+    public static final int MAX_FIELD_SIZE = 10_000;
+
+    public static final int CELL_IS_EMPTY = 0;
+    public static final int CELL_IS_BORDER = 8;
+
+    private static final int FIGURES_PER_LEVEL = 40;
+
+    // Number of upcoming figure types known in advance, including the 'next' figure.
+    public static final int MAX_PREVIEW_COUNT = 6;
+
+    // Input commands, see postCommand().
+    public static final int CMD_LEFT = 1;
+    public static final int CMD_ROTATE = 2;
+    public static final int CMD_RIGHT = 3;
+    public static final int CMD_DROP = 4;
+
+    private static final int INPUT_QUEUE_CAPACITY = 64;
+
+    public interface OnScoreChangedListener {
+        void onScoreChanged(int score, int lines, int figuresCount);
+    }
+
+    public interface OnLevelChangedListener {
+        void onLevelChanged(int newLevel);
+    }
+
+    public interface OnGameOverListener {
+        void onGameOver();
+    }
+
+    private FigureRandomizer figureRandomizer = new UniformRandomizer();
+    // Upcoming figure types after the 'next' figure.
+    private final FigureQueue figureQueue = new FigureQueue(MAX_PREVIEW_COUNT - 1);
+
+    // Seed for the next games, random if not set.
+    private boolean isFixedSeed = false;
+    private long fixedSeed;
+    // Seed of the current game.
+    private long gameSeed;
+
+    // Frames for the renderer, painted on the render thread.
+    private final FrameExchange frames = new FrameExchange();
+    private RenderThread renderThread;
+
+    // Latency metrics, null if they are off. Read without the Game lock to time waiting for it.
+    private volatile GameMetrics metrics;
+
+    // Post time of the earliest applied input command not yet shown in a published frame.
+    private boolean hasUnshownInput;
+    private long unshownInputNanos;
+
+    // Incremented for every new game field.
+    private int fieldGeneration;
+
+    private final GameLoop gameLoop = new GameLoop(new GameLoop.Callback() {
+        @Override
+        public long onTick() {
+            return processTimePassed();
+        }
+
+        @Override
+        public void onWakeUp() {
+            processInput();
+        }
+    });
+
+    // Replay of the current game, and the number of ticks run in it. Ticks do not pass while
+    // the game is paused.
+    private final ReplayRecorder replayRecorder = new ReplayRecorder();
+    private int tickCount;
+
+    // Commands posted from input handlers, applied on the Game loop thread.
+    private final InputQueue inputQueue = new InputQueue(INPUT_QUEUE_CAPACITY);
+    // Commands posted before this time were meant for a previous game, or were posted while
+    // the game was paused.
+    private long inputStartNanos;
+
+    private OnScoreChangedListener onScoreChangedListener;
+    private OnLevelChangedListener onLevelChangedListener;
+    private OnGameOverListener onGameOverListener;
+
+    private Figure currentFigure;
+    private Figure nextFigure;
+
+    // Figures that are no longer in play, reused for the next ones.
+    private final Figure[] spareFigures = new Figure[2];
+    private int spareFigureCount;
+
+    // Counts of figure types in the current game.
+    // 0-element is total count, the rest is indexed by FigureType.
+    // TODO: show detailed statistics in UI.
+    private final int[] inGameFigureCounts = new int[Figure.FT_MAX + 1];
+
+    private int reducedLinesCount;
+    private int gameScore;
+
+    // Changes whenever the score, the lines, the figure count or the level change, so that
+    // readers can check for changes without the Game lock.
+    private volatile int statsVersion;
+
+    // Level that the level listener was last told about, -1 to tell it again.
+    private int publishedLevel = -1;
+
+    private int startingLevel = 4;
+    private int currentLevel;
+
+    // Number of played figures, when the level increases to the next one.
+    private int nextLevelFiguresCount;
+
+    // Field size of the next games.
+    private int fieldWidth = DEFAULT_FIELD_WIDTH;
+    private int fieldHeight = DEFAULT_FIELD_HEIGHT;
+
+    // Gravity of the next games, and of the current one. Every tick is one of its frames.
+    private GravityCurve nextGravityCurve = GravityCurve.CLASSIC;
+    private GravityCurve gravityCurve = GravityCurve.CLASSIC;
+    // Gravity accumulated for the current figure, in GravityCurve.CELL units.
+    private int gravity;
+
+    // Package-private for benchmarks.
+    Board gameField = new Board(fieldWidth, fieldHeight);
+
+    private boolean isInGame = false;
+    private boolean isPaused = false;
+    private boolean isShowNextFigure = false;
+
+    // Real time games run ticks on the Game loop thread, others are advanced by advanceTick().
+    private boolean isRealTime = true;
+
+    // Computer player, created when hints or autoplay are turned on.
+    private AutoPlayer autoPlayer;
+    // Set when the current figure has to be searched for again on the next tick, e.g. after
+    // hints were turned on, so that the search does not run on the thread of the setter.
+    private boolean isPlanNeeded = false;
+    private boolean isShowHint = false;
+    private boolean isAutoPlay = false;
+    private boolean isShowGhost = false;
+
+    // Whether autoplay played any part of the current game.
+    private boolean isAutoPlayed = false;
+    private final int[] upcomingFigureTypes = new int[MAX_PREVIEW_COUNT];
+
+    // Progress of autoplay along the path to the best placement of the current figure, and
+    // the position the figure is expected at after the steps played so far.
+    private int nextPathStep;
+    private int expectedRotation;
+    private int expectedX;
+    private int expectedY;
+
+    /**
+     * Sets the renderer to paint the game with, on its own render thread.
+     *
+     * @param renderer the renderer, null to stop rendering.
+     */
+    public synchronized void setRenderer(GameRenderer renderer) {
+        if (renderThread != null) {
+            renderThread.shutdown();
+            renderThread = null;
+        }
+        if (renderer != null) {
+            renderThread = new RenderThread(frames, renderer);
+            renderThread.setMetrics(metrics);
+            renderThread.start();
+        }
+    }
+
+    /**
+     * Stops the render thread and the Game loop thread, e.g. when the app is closed, and waits
+     * for the frame being painted. The game stays as it is, and a new or resumed game starts
+     * the Game loop again.
+     */
+    public synchronized void shutdown() {
+        setRenderer(null);
+        gameLoop.stop();
+    }
+
+    /**
+     * Starts measuring latencies of the game into given metrics.
+     *
+     * @param metrics the metrics, null to stop measuring.
+     */
+    public synchronized void setMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+        if (renderThread != null) {
+            renderThread.setMetrics(metrics);
+        }
+    }
+
+    public GameMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setOnScoreChangedListener(OnScoreChangedListener onScoreChangedListener) {
+        this.onScoreChangedListener = onScoreChangedListener;
+    }
+
+    public void setOnLevelChangedListener(OnLevelChangedListener onLevelChangedListener) {
+        this.onLevelChangedListener = onLevelChangedListener;
+    }
+
+    public void setOnGameOverListener(OnGameOverListener onGameOverListener) {
+        this.onGameOverListener = onGameOverListener;
+    }
+
+    public synchronized void setShowNextFigure(boolean isShowNextFigure) {
+        this.isShowNextFigure = isShowNextFigure;
+    }
+
+    /**
+     * Sets the computer player used for hints and autoplay, e.g. to change its time budget
+     * or lookahead. It searches for the current figure on the next tick.
+     */
+    public synchronized void setAutoPlayer(AutoPlayer autoPlayer) {
+        this.autoPlayer = autoPlayer;
+        isPlanNeeded = true;
+    }
+
+    /**
+     * Shows the best placement of the current figure, found by the computer player on the
+     * next tick.
+     */
+    public synchronized void setShowHint(boolean isShowHint) {
+        this.isShowHint = isShowHint;
+        isPlanNeeded = true;
+        repaintField();
+    }
+
+    /**
+     * Shows the outline of where the current figure lands if it is dropped.
+     */
+    public synchronized void setShowGhost(boolean isShowGhost) {
+        this.isShowGhost = isShowGhost;
+        repaintField();
+    }
+
+    /**
+     * Lets the computer player move and drop the figures on Game loop ticks, from the next
+     * one.
+     */
+    public synchronized void setAutoPlay(boolean isAutoPlay) {
+        this.isAutoPlay = isAutoPlay;
+        if (isAutoPlay && isInGame) {
+            isAutoPlayed = true;
+        }
+        isPlanNeeded = true;
+    }
+
+    /**
+     * Sets the strategy of choosing figure types, used from the next new game.
+     */
+    public synchronized void setFigureRandomizer(FigureRandomizer figureRandomizer) {
+        this.figureRandomizer = figureRandomizer;
+    }
+
+    /**
+     * Makes the next games start from a given seed, so they get the same sequence of figures.
+     */
+    public synchronized void setSeed(long seed) {
+        this.fixedSeed = seed;
+        this.isFixedSeed = true;
+    }
+
+    /**
+     * Makes the next games start from a random seed. This is the default.
+     */
+    public synchronized void clearSeed() {
+        this.isFixedSeed = false;
+    }
+
+    /**
+     * Returns the seed the current (or the last) game was started from.
+     */
+    public synchronized long getGameSeed() {
+        return gameSeed;
+    }
+
+    /**
+     * Returns the type of an upcoming figure.
+     *
+     * @param index 0 for the 'next' figure, up to {@link #MAX_PREVIEW_COUNT} - 1.
+     * @return figure type, or 0 if there is no game in progress.
+     */
+    public synchronized int peekFigureType(int index) {
+        if (!isInGame || nextFigure == null) {
+            return 0;
+        }
+        return index == 0 ? nextFigure.figureType() : figureQueue.peek(index - 1);
+    }
+
+    /**
+     * Sets if the next games are played in real time, on the Game loop thread, which is the
+     * default. Otherwise the game runs on a virtual clock: nothing happens until the caller
+     * runs ticks with advanceTick(), stepTicks(), runUntilLock() or runUntilGameOver(), which
+     * never sleep, and no frames are published to the renderer.
+     */
+    public synchronized void setRealTime(boolean isRealTime) {
+        this.isRealTime = isRealTime;
+    }
+
+    public synchronized boolean isInGame() {
+        return isInGame;
+    }
+
+    public synchronized int getScore() {
+        return gameScore;
+    }
+
+    public synchronized int getLinesCount() {
+        return reducedLinesCount;
+    }
+
+    public synchronized int getFiguresCount() {
+        return inGameFigureCounts[0];
+    }
+
+    public synchronized int getLevel() {
+        return currentLevel;
+    }
+
+    /**
+     * Returns the result of the current game, or of the last one once it is over, e.g. to
+     * add it to a {@link GameHistory} from the game over listener.
+     */
+    public synchronized GameRecord getGameRecord() {
+        int flags = (isShowNextFigure ? HistoryFormat.FLAG_SHOW_NEXT_FIGURE : 0)
+                | (isAutoPlayed ? HistoryFormat.FLAG_AUTOPLAYED : 0);
+        return new GameRecord(System.currentTimeMillis(), gameSeed, tickCount, gameScore,
+                reducedLinesCount, inGameFigureCounts, startingLevel, currentLevel,
+                ReplayFormat.randomizerCode(figureRandomizer), flags,
+                gameField.width(), gameField.height());
+    }
+
+    /**
+     * Returns a number that changes whenever the score, the lines, the figure count or the
+     * level change. Does not wait for the Game lock, so it is cheap to check every frame.
+     */
+    public int getStatsVersion() {
+        return statsVersion;
+    }
+
+    /**
+     * Copies the score, the lines, the figure count and the level at once, with their version.
+     */
+    public synchronized void copyStats(GameStats stats) {
+        stats.set(statsVersion, gameScore, reducedLinesCount, inGameFigureCounts[0], currentLevel);
+    }
+
+    /**
+     * Sets the size of the game field, used from the next new game.
+     *
+     * @param width  from {@link #MIN_FIELD_WIDTH} to {@link #MAX_FIELD_SIZE} cells.
+     * @param height from {@link #MIN_FIELD_HEIGHT} to {@link #MAX_FIELD_SIZE} cells.
+     */
+    public synchronized void setFieldSize(int width, int height) {
+        checkFieldSize(width, height);
+        this.fieldWidth = width;
+        this.fieldHeight = height;
+    }
+
+    public synchronized int getFieldWidth() {
+        return fieldWidth;
+    }
+
+    public synchronized int getFieldHeight() {
+        return fieldHeight;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a field size is not supported.
+     */
+    public static void checkFieldSize(int width, int height) {
+        if (width < MIN_FIELD_WIDTH || width > MAX_FIELD_SIZE
+                || height < MIN_FIELD_HEIGHT || height > MAX_FIELD_SIZE) {
+            throw new IllegalArgumentException("Unsupported field size " + width + "x" + height);
+        }
+    }
+
+    /**
+     * Sets the speeds of gravity by level and the frame rate of the ticks, used from the next
+     * new game. Games start with {@link GravityCurve#CLASSIC}, the speeds of the app so far;
+     * {@link GravityCurve#STANDARD} has to be set to be used.
+     */
+    public synchronized void setGravityCurve(GravityCurve gravityCurve) {
+        if (gravityCurve == null) {
+            throw new NullPointerException("gravityCurve");
+        }
+        nextGravityCurve = gravityCurve;
+    }
+
+    public synchronized GravityCurve getGravityCurve() {
+        return nextGravityCurve;
+    }
+
+    public synchronized int getStartingLevel() {
+        return startingLevel;
+    }
+
+    public synchronized void setStartingLevel(int startingLevel) {
+        this.startingLevel = startingLevel;
+    }
+
+    /**
+     * Starts a new game.
+     */
+    public synchronized void newGame() {
+        // Re-initialise the game field in place if it has the same size, borders are filled
+        // by the Board.
+        if (gameField.width() == fieldWidth && gameField.height() == fieldHeight) {
+            gameField.clear();
+        } else {
+            gameField = new Board(fieldWidth, fieldHeight);
+        }
+        fieldGeneration++;
+
+        // Resets Figure types statistics.
+        for (int i = 0; i <= Figure.FT_MAX; i++) {
+            inGameFigureCounts[i] = 0;
+        }
+
+        // Reset score and line counts.
+        reducedLinesCount = 0;
+        gameScore = 0;
+
+        currentLevel = startingLevel;
+        publishedLevel = -1;
+        publishStats();
+
+        nextLevelFiguresCount = currentLevel * FIGURES_PER_LEVEL;
+
+        gameSeed = isFixedSeed ? fixedSeed : FastRandom.randomSeed();
+        figureQueue.reset(figureRandomizer, gameSeed);
+
+        tickCount = 0;
+        gravityCurve = nextGravityCurve;
+        replayRecorder.start(gameSeed, startingLevel, isShowNextFigure,
+                ReplayFormat.randomizerCode(figureRandomizer), fieldWidth, fieldHeight,
+                gravityCurve);
+
+        recycleFigure(currentFigure);
+        recycleFigure(nextFigure);
+        currentFigure = null;
+        nextFigure = obtainFigure(nextFigureType());
+        newFigure();
+
+        isInGame = true;
+        isAutoPlayed = isAutoPlay;
+        inputStartNanos = System.nanoTime();
+        repaintField();
+
+        // (Re)start the main Game loop, this also stops the loop of a previous game.
+        updateGameLoop();
+    }
+
+    /**
+     * Runs the Game loop while a real time game is in progress and not paused, and stops it
+     * otherwise, so that a paused game does not wake up for ticks. Starting it again replaces
+     * the loop thread, and the first tick is one period later.
+     */
+    private void updateGameLoop() {
+        if (isRealTime && isInGame && !isPaused) {
+            gameLoop.start(tickPeriodNanos());
+        } else {
+            gameLoop.stop();
+        }
+    }
+
+    /**
+     * Returns time between ticks, the frame period of the gravity curve of the current game,
+     * e.g. to schedule the ticks of a game that is not played in real time.
+     */
+    public synchronized long getTickPeriodNanos() {
+        return tickPeriodNanos();
+    }
+
+    private long tickPeriodNanos() {
+        return gravityCurve.framePeriodNanos();
+    }
+
+    /**
+     * One tick of the Game loop.
+     *
+     * @return time until the next tick.
+     */
+    private long processTimePassed() {
+        GameMetrics metrics = this.metrics;
+        long startNanos = metrics != null ? System.nanoTime() : 0;
+        synchronized (this) {
+            // Ignore a tick of the loop that has just been replaced by a new game.
+            if (!gameLoop.isLoopThread()) {
+                return tickPeriodNanos();
+            }
+            if (metrics == null) {
+                tick();
+                return tickPeriodNanos();
+            }
+            long lockedNanos = System.nanoTime();
+            metrics.lockWait().record(lockedNanos - startNanos);
+            tick();
+            metrics.tick().record(System.nanoTime() - lockedNanos);
+            return tickPeriodNanos();
+        }
+    }
+
+    /**
+     * Runs one tick of a game that is not played in real time, e.g. by a batch simulation.
+     * Does nothing if the game is over or paused.
+     */
+    public synchronized void advanceTick() {
+        checkVirtualClock();
+        tick();
+    }
+
+    /**
+     * Runs ticks of a game that is not played in real time, as fast as they can run. Does
+     * nothing if the game is paused, as no ticks pass then in real time either.
+     *
+     * @param count number of ticks to run.
+     * @return the number of ticks run, less than count if the game is over or paused.
+     */
+    public synchronized int stepTicks(int count) {
+        checkVirtualClock();
+        int ticks = 0;
+        while (ticks < count && isInGame && !isPaused) {
+            tick();
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * Runs ticks of a game that is not played in real time until the current figure is locked
+     * into the field, or the game is over. Does nothing if the game is paused.
+     *
+     * @return the number of ticks run.
+     */
+    public synchronized int runUntilLock() {
+        checkVirtualClock();
+        int figuresCount = inGameFigureCounts[0];
+        int ticks = 0;
+        while (isInGame && !isPaused && inGameFigureCounts[0] == figuresCount) {
+            tick();
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * Runs ticks of a game that is not played in real time until the game is over. Does
+     * nothing if the game is paused.
+     *
+     * @param maxTicks number of ticks after which to stop anyway, e.g. for an autoplayed game
+     *                 that could go on for very long.
+     * @return the number of ticks run.
+     */
+    public synchronized int runUntilGameOver(int maxTicks) {
+        checkVirtualClock();
+        int ticks = 0;
+        while (ticks < maxTicks && isInGame && !isPaused) {
+            tick();
+            ticks++;
+        }
+        return ticks;
+    }
+
+    private void checkVirtualClock() {
+        if (isRealTime) {
+            throw new IllegalStateException("The game is played in real time");
+        }
+    }
+
+    private void tick() {
+        // Paused ticks are not counted, so a pause takes no ticks in the replay.
+        if (!isInGame || isPaused) {
+            return;
+        }
+        boolean isChanged = false;
+        if (isPlanNeeded) {
+            planCurrentFigure();
+            // Shows the hint found.
+            isChanged = isShowHint;
+        }
+        if (isAutoPlay) {
+            // Commands of the auto player apply before this tick, as in its replay.
+            isChanged |= autoPlayStep();
+            if (!isInGame) {
+                repaintField();
+                return;
+            }
+        }
+        // Most ticks of slow levels only add to the gravity, nothing to paint.
+        if (applyGravity() || isChanged) {
+            repaintField();
+        }
+        tickCount++;
+    }
+
+    /**
+     * Adds the gravity of the current level for one frame, and moves the current figure down
+     * one cell per whole cell accumulated. A figure that cannot move down is locked, but not
+     * in the frame it landed in, so that even at many cells per frame it rests on the stack
+     * for at least one frame.
+     *
+     * @return true if the figure moved or was locked.
+     */
+    private boolean applyGravity() {
+        if (currentFigure == null) {
+            return false;
+        }
+        gravity += gravityCurve.cellsPerFrame(currentLevel);
+        boolean isMoved = false;
+        while (gravity >= GravityCurve.CELL) {
+            if (isMoved && !currentFigure.canGoDown()) {
+                // Landed, the rest of this frame's gravity is lost.
+                gravity &= GravityCurve.CELL - 1;
+                return true;
+            }
+            if (!currentFigure.maybeOneStepDown()) {
+                afterFigureIsDown();
+                return true;
+            }
+            gravity -= GravityCurve.CELL;
+            isMoved = true;
+        }
+        return isMoved;
+    }
+
+    /**
+     * Applies all posted input commands in order, then repaints once if anything was applied.
+     */
+    private void processInput() {
+        if (inputQueue.isEmpty()) {
+            return;
+        }
+        GameMetrics metrics = this.metrics;
+        long startNanos = metrics != null ? System.nanoTime() : 0;
+        synchronized (this) {
+            if (!gameLoop.isLoopThread()) {
+                return;
+            }
+            if (metrics != null) {
+                metrics.lockWait().record(System.nanoTime() - startNanos);
+            }
+            boolean isApplied = false;
+            int command;
+            while ((command = inputQueue.poll()) != 0) {
+                long postedNanos = inputQueue.polledTimestampNanos();
+                if (postedNanos - inputStartNanos >= 0 && applyCommand(command)) {
+                    isApplied = true;
+                    if (metrics != null && !hasUnshownInput) {
+                        hasUnshownInput = true;
+                        unshownInputNanos = postedNanos;
+                    }
+                }
+            }
+            if (isApplied) {
+                repaintField();
+            }
+        }
+    }
+
+    void reduceLines() {
+        int reducedLines = gameField.removeFullRows();
+
+        reducedLinesCount += reducedLines;
+        gameScore += maybeAdjustScoreIncrement(reducedLines * reducedLines *
+                (currentLevel + 1) * (currentLevel + 1) * 10);
+    }
+
+    /**
+     * Publishes the current state of the game as a frame for the renderer, if there is one.
+     * Does not wait for the frame to be painted.
+     */
+    public synchronized void repaintField() {
+        if (renderThread == null || !isRealTime) {
+            return;
+        }
+        FrameSnapshot frame = frames.backBuffer();
+        captureFrame(frame);
+        frame.captureInput(hasUnshownInput, unshownInputNanos);
+        hasUnshownInput = false;
+        frames.publish();
+    }
+
+    /**
+     * Copies the current state of the game to a frame owned by the caller, e.g. to send it to
+     * a remote player instead of painting it. Only the rows of settled blocks that changed
+     * since the frame was last captured are copied.
+     */
+    public synchronized void captureFrame(FrameSnapshot frame) {
+        frame.captureField(gameField, fieldGeneration);
+        frame.captureFigure(currentFigure);
+        frame.captureNext(isShowNextFigure ? nextFigure : null);
+        // A placement of the computer player may be of another figure until it searches again.
+        if (isShowHint && !isPlanNeeded && currentFigure != null && autoPlayer != null
+                && autoPlayer.hasPlacement()) {
+            frame.captureHint(currentFigure.figureType(), autoPlayer.bestRotation(),
+                    autoPlayer.bestX(), autoPlayer.bestLandingY());
+        } else {
+            frame.captureHint(0, 0, 0, 0);
+        }
+        if (isShowGhost && currentFigure != null) {
+            frame.captureGhost(currentFigure.figureType(), currentFigure.rotationStateNumber,
+                    currentFigure.anchorX(), currentFigure.ghostY());
+        } else {
+            frame.captureGhost(0, 0, 0, 0);
+        }
+    }
+
+    /**
+     * Searches for the best placement of the current figure, if hints or autoplay are on.
+     */
+    private void planCurrentFigure() {
+        isPlanNeeded = false;
+        if (!(isShowHint || isAutoPlay) || currentFigure == null) {
+            return;
+        }
+        if (autoPlayer == null) {
+            autoPlayer = new AutoPlayer();
+        }
+        int upcomingCount = 0;
+        if (nextFigure != null) {
+            upcomingFigureTypes[upcomingCount++] = nextFigure.figureType();
+            for (int i = 0; i < figureQueue.size(); i++) {
+                upcomingFigureTypes[upcomingCount++] = figureQueue.peek(i);
+            }
+        }
+        autoPlayer.search(gameField, currentFigure, upcomingFigureTypes, upcomingCount);
+        nextPathStep = 0;
+        expectedRotation = currentFigure.rotationStateNumber;
+        expectedX = currentFigure.anchorX();
+        expectedY = currentFigure.anchorY();
+    }
+
+    /**
+     * Plays the commands towards the best placement of the current figure, up to the next
+     * wait for gravity, or drops the figure when it is there. Searches again if the figure is
+     * not where it is expected, e.g. after a move of the player, or if a move is blocked.
+     *
+     * @return true if any command was applied.
+     */
+    private boolean autoPlayStep() {
+        if (currentFigure == null) {
+            return false;
+        }
+        if (currentFigure.rotationStateNumber != expectedRotation
+                || currentFigure.anchorX() != expectedX
+                || currentFigure.anchorY() < expectedY) {
+            planCurrentFigure();
+        }
+        if (autoPlayer == null || !autoPlayer.hasPlacement()) {
+            return false;
+        }
+        boolean isApplied = false;
+        while (nextPathStep < autoPlayer.pathLength()) {
+            int step = autoPlayer.pathStep(nextPathStep);
+            if (step == Placements.WAIT) {
+                if (currentFigure.anchorY() <= expectedY) {
+                    // Gravity moves the figure in this tick or a later one.
+                    return isApplied;
+                }
+                // Gravity has already moved the figure, e.g. right after it appeared.
+                nextPathStep++;
+                expectedY++;
+                continue;
+            }
+            nextPathStep++;
+            applyCommand(step);
+            isApplied = true;
+            if (currentFigure.rotationStateNumber == expectedRotation
+                    && currentFigure.anchorX() == expectedX) {
+                // The move was blocked.
+                planCurrentFigure();
+                return true;
+            }
+            expectedRotation = currentFigure.rotationStateNumber;
+            expectedX = currentFigure.anchorX();
+        }
+        applyCommand(CMD_DROP);
+        return true;
+    }
+
+    /**
+     * Generates next Figure type.
+     *
+     * @return figure type
+     */
+    private int nextFigureType() {
+        return figureQueue.take();
+    }
+
+    /**
+     * Increases Figure count by 1, increases score, increases level if appropriate.
+     */
+    private void increaseFigureCount() {
+        int iFigType = currentFigure.figureType();
+
+        inGameFigureCounts[0]++;
+        inGameFigureCounts[iFigType]++;
+        gameScore += maybeAdjustScoreIncrement((currentLevel + 1) * (currentLevel + 1) * 3);
+
+        if ((currentLevel < gravityCurve.maxLevel())
+                && (inGameFigureCounts[0] >= nextLevelFiguresCount)) {
+            currentLevel++;
+            nextLevelFiguresCount += FIGURES_PER_LEVEL;
+        }
+    }
+
+    /**
+     * Makes a new version of the stats and tells the listeners about it, once for all the
+     * changes of a figure going down, and the level listener only if the level changed.
+     */
+    private void publishStats() {
+        statsVersion++;
+        if (onScoreChangedListener != null) {
+            onScoreChangedListener.onScoreChanged(gameScore, reducedLinesCount, inGameFigureCounts[0]);
+        }
+        if (currentLevel != publishedLevel) {
+            publishedLevel = currentLevel;
+            if (onLevelChangedListener != null) {
+                onLevelChangedListener.onLevelChanged(currentLevel);
+            }
+        }
+    }
+
+    /**
+     * Adjusts score increment down by 10% if the 'next' figure is being shown.
+     *
+     * @param scoreIncrement score increment to adjust.
+     * @return adjusted score increment.
+     */
+    private int maybeAdjustScoreIncrement(int scoreIncrement) {
+        if (isShowNextFigure) {
+            scoreIncrement = (scoreIncrement * 9) / 10;
+        }
+        return scoreIncrement;
+    }
+
+    private void onGameOver() {
+        isInGame = false;
+        gameLoop.stop();
+        recycleFigure(currentFigure);
+        recycleFigure(nextFigure);
+        currentFigure = null;
+        nextFigure = null;
+        if (onGameOverListener != null) {
+            onGameOverListener.onGameOver();
+        }
+    }
+
+    private void newFigure() {
+        if (nextFigure != null && nextFigure.isGameOver()) {
+            onGameOver();
+            return;
+        }
+
+        recycleFigure(currentFigure);
+        currentFigure = nextFigure;
+        nextFigure = obtainFigure(nextFigureType());
+        gravity = 0;
+        planCurrentFigure();
+    }
+
+    /**
+     * Returns a Figure of a given type at the top of the game field, reusing one that is no
+     * longer in play if there is one.
+     */
+    private Figure obtainFigure(int figureType) {
+        if (spareFigureCount == 0) {
+            return new Figure(gameField, figureType);
+        }
+        Figure figure = spareFigures[--spareFigureCount];
+        spareFigures[spareFigureCount] = null;
+        figure.reset(gameField, figureType);
+        return figure;
+    }
+
+    /**
+     * Keeps a Figure that is no longer in play for reuse. The caller drops its reference.
+     */
+    private void recycleFigure(Figure figure) {
+        if (figure != null && spareFigureCount < spareFigures.length) {
+            spareFigures[spareFigureCount++] = figure;
+        }
+    }
+
+    private void afterFigureIsDown() {
+        increaseFigureCount();
+        reduceLines();
+        publishStats();
+        newFigure();
+    }
+
+    /**
+     * Pauses the game, if it is not paused yet. The Game loop stops until the game is resumed.
+     */
+    public synchronized void pause() {
+        if (isInGame && !isPaused) {
+            replayRecorder.record(tickCount, ReplayFormat.EVENT_PAUSE);
+        }
+        isPaused = true;
+        updateGameLoop();
+    }
+
+    /**
+     * Pauses the game, or resumes it if it is paused. Commands posted while it was paused are
+     * dropped on resume.
+     *
+     * @return true if the game is paused now.
+     */
+    public synchronized boolean togglePaused() {
+        isPaused = !isPaused;
+        if (isInGame) {
+            replayRecorder.record(tickCount,
+                    isPaused ? ReplayFormat.EVENT_PAUSE : ReplayFormat.EVENT_RESUME);
+        }
+        if (!isPaused) {
+            inputStartNanos = System.nanoTime();
+        }
+        updateGameLoop();
+        return isPaused;
+    }
+
+    /**
+     * Saves the whole state of the game in progress, e.g. for the game to survive the end of
+     * the app process. The snapshot is a few hundred bytes plus the replay recorded so far, see
+     * {@link SnapshotFormat}.
+     *
+     * @return the snapshot, or null if there is no game in progress, or if the game uses a
+     * figure randomizer other than those of this package, which a restored game could not
+     * create again.
+     */
+    public synchronized byte[] saveState() {
+        int randomizerCode = ReplayFormat.randomizerCode(figureRandomizer);
+        if (!isInGame || currentFigure == null || nextFigure == null
+                || randomizerCode == ReplayFormat.RANDOMIZER_UNKNOWN) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SnapshotFormat.MAX_SIZE_WITHOUT_FIELD_AND_REPLAY
+                + gravityCurve.encodedSize() + gameField.cellsSize() + replayRecorder.stateSize());
+        buffer.putInt(SnapshotFormat.MAGIC);
+        buffer.put((byte) SnapshotFormat.VERSION);
+        buffer.put((byte) ((isShowNextFigure ? SnapshotFormat.FLAG_SHOW_NEXT_FIGURE : 0)
+                | (isPaused ? SnapshotFormat.FLAG_PAUSED : 0)
+                | (isAutoPlayed ? SnapshotFormat.FLAG_AUTOPLAYED : 0)));
+        buffer.put((byte) randomizerCode);
+        buffer.put((byte) startingLevel);
+        buffer.put((byte) currentLevel);
+        buffer.putLong(gameSeed);
+        buffer.putInt(tickCount);
+        buffer.putInt(gameScore);
+        buffer.putInt(reducedLinesCount);
+        buffer.putInt(nextLevelFiguresCount);
+        for (int count : inGameFigureCounts) {
+            buffer.putInt(count);
+        }
+        figureRandomizer.writeState(buffer);
+
+        buffer.put((byte) figureQueue.size());
+        for (int i = 0; i < figureQueue.size(); i++) {
+            buffer.put((byte) figureQueue.peek(i));
+        }
+        buffer.put((byte) currentFigure.figureType());
+        buffer.put((byte) currentFigure.rotationStateNumber);
+        buffer.putShort((short) currentFigure.anchorX());
+        buffer.putShort((short) currentFigure.anchorY());
+        buffer.put((byte) nextFigure.figureType());
+        buffer.putInt(gravity);
+        gravityCurve.write(buffer);
+
+        buffer.putShort((short) gameField.width());
+        buffer.putShort((short) gameField.height());
+        gameField.writeCells(buffer);
+
+        replayRecorder.writeState(buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Replaces the current game with a game saved by {@link #saveState()}, paused. The
+     * settings of the saved game replace the current ones, like the starting level and the
+     * figure randomizer. Nothing changes if the snapshot cannot be restored.
+     *
+     * @throws IllegalArgumentException if the snapshot is broken, or is of another version.
+     */
+    public synchronized void restoreState(byte[] snapshot) {
+        ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+        try {
+            if (buffer.getInt() != SnapshotFormat.MAGIC) {
+                throw new IllegalArgumentException("Not a game snapshot");
+            }
+            int version = buffer.get();
+            if (version != SnapshotFormat.VERSION) {
+                throw new IllegalArgumentException("Unsupported snapshot version " + version);
+            }
+            int flags = buffer.get();
+            FigureRandomizer savedRandomizer = ReplayFormat.newRandomizer(buffer.get());
+            int savedStartingLevel = buffer.get();
+            int savedLevel = buffer.get();
+            long savedSeed = buffer.getLong();
+            int savedTickCount = buffer.getInt();
+            int savedScore = buffer.getInt();
+            int savedLinesCount = buffer.getInt();
+            int savedNextLevelFiguresCount = buffer.getInt();
+            int[] savedFigureCounts = new int[inGameFigureCounts.length];
+            for (int i = 0; i < savedFigureCounts.length; i++) {
+                savedFigureCounts[i] = buffer.getInt();
+            }
+            savedRandomizer.readState(buffer);
+
+            if (buffer.get() != figureQueue.size()) {
+                throw new IllegalArgumentException("Snapshot of another preview size");
+            }
+            int[] upcomingTypes = new int[figureQueue.size()];
+            for (int i = 0; i < upcomingTypes.length; i++) {
+                upcomingTypes[i] = Figure.checkFigureType(buffer.get());
+            }
+            int currentType = Figure.checkFigureType(buffer.get());
+            int currentRotation = buffer.get();
+            int currentX = buffer.getShort();
+            int currentY = buffer.getShort();
+            int nextType = Figure.checkFigureType(buffer.get());
+            int savedGravity = buffer.getInt();
+            GravityCurve savedGravityCurve = GravityCurve.read(buffer, buffer.position());
+            buffer.position(buffer.position() + savedGravityCurve.encodedSize());
+            if (savedGravity < 0 || savedGravity >= GravityCurve.CELL) {
+                throw new IllegalArgumentException("Broken gravity " + savedGravity);
+            }
+            checkSavedLevel(savedStartingLevel, savedGravityCurve);
+            checkSavedLevel(savedLevel, savedGravityCurve);
+
+            int savedWidth = buffer.getShort();
+            int savedHeight = buffer.getShort();
+            checkFieldSize(savedWidth, savedHeight);
+            Board savedField = new Board(savedWidth, savedHeight);
+            savedField.readCells(buffer);
+            Figure savedCurrentFigure = new Figure(savedField, currentType);
+            savedCurrentFigure.moveTo(currentRotation, currentX, currentY);
+
+            // The last part to read, it changes nothing if it is broken.
+            replayRecorder.readState(buffer);
+            figureQueue.restore(savedRandomizer, upcomingTypes);
+
+            figureRandomizer = savedRandomizer;
+            startingLevel = savedStartingLevel;
+            fieldWidth = savedWidth;
+            fieldHeight = savedHeight;
+            currentLevel = savedLevel;
+            nextGravityCurve = savedGravityCurve;
+            gravityCurve = savedGravityCurve;
+            gravity = savedGravity;
+            isShowNextFigure = (flags & SnapshotFormat.FLAG_SHOW_NEXT_FIGURE) != 0;
+            gameSeed = savedSeed;
+            tickCount = savedTickCount;
+            gameScore = savedScore;
+            reducedLinesCount = savedLinesCount;
+            nextLevelFiguresCount = savedNextLevelFiguresCount;
+            System.arraycopy(savedFigureCounts, 0, inGameFigureCounts, 0, savedFigureCounts.length);
+            gameField = savedField;
+            fieldGeneration++;
+            recycleFigure(currentFigure);
+            recycleFigure(nextFigure);
+            currentFigure = savedCurrentFigure;
+            nextFigure = obtainFigure(nextType);
+            isPaused = (flags & SnapshotFormat.FLAG_PAUSED) != 0;
+            isAutoPlayed = (flags & SnapshotFormat.FLAG_AUTOPLAYED) != 0;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            // The gravity curve is read with absolute gets, which throw the latter.
+            throw new IllegalArgumentException("Truncated game snapshot", e);
+        }
+
+        isInGame = true;
+        isAutoPlayed |= isAutoPlay;
+        // Also stops the loop of the previous game, until the restored one is resumed.
+        pause();
+        inputStartNanos = System.nanoTime();
+        planCurrentFigure();
+
+        publishedLevel = -1;
+        publishStats();
+        repaintField();
+    }
+
+    /**
+     * @throws IllegalArgumentException if a level of a snapshot is not one of its gravity curve.
+     */
+    private static void checkSavedLevel(int level, GravityCurve gravityCurve) {
+        if (level < 0 || level > gravityCurve.maxLevel()) {
+            throw new IllegalArgumentException("Broken level " + level);
+        }
+    }
+
+    /**
+     * Returns the replay of the current (or the last) game, from its start up to now.
+     * See {@link ReplayPlayer}.
+     */
+    public synchronized byte[] getReplay() {
+        return replayRecorder.toByteArray(tickCount);
+    }
+
+    /**
+     * Returns the number of ticks run in the current game, not counting paused ones.
+     */
+    public synchronized int getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Applies an event of a replay: an input command, a pause or a resume.
+     */
+    synchronized void applyReplayed(int event) {
+        switch (event) {
+            case ReplayFormat.EVENT_PAUSE:
+                pause();
+                break;
+            case ReplayFormat.EVENT_RESUME:
+                if (isPaused) {
+                    togglePaused();
+                }
+                break;
+            default:
+                if (applyCommand(event)) {
+                    repaintField();
+                }
+                break;
+        }
+    }
+
+    /**
+     * Posts an input command to be applied on the Game loop thread, in the order of posting.
+     * Does not wait for the Game lock, so it is cheap to call from the UI thread.
+     *
+     * @param command one of CMD_LEFT, CMD_ROTATE, CMD_RIGHT or CMD_DROP.
+     */
+    public void postCommand(int command) {
+        if (inputQueue.offer(command, System.nanoTime())) {
+            gameLoop.wakeUp();
+        }
+    }
+
+    public synchronized void left() {
+        if (applyCommand(CMD_LEFT)) {
+            repaintField();
+        }
+    }
+
+    public synchronized void rotate() {
+        if (applyCommand(CMD_ROTATE)) {
+            repaintField();
+        }
+    }
+
+    public synchronized void right() {
+        if (applyCommand(CMD_RIGHT)) {
+            repaintField();
+        }
+    }
+
+    public synchronized void drop() {
+        if (applyCommand(CMD_DROP)) {
+            repaintField();
+        }
+    }
+
+    /**
+     * Applies an input command to the current figure, without repainting.
+     *
+     * @return true if the command was applied, false if there is no game in progress.
+     */
+    private boolean applyCommand(int command) {
+        if (!isInGame || isPaused || currentFigure == null) {
+            return false;
+        }
+        switch (command) {
+            case CMD_LEFT:
+                currentFigure.left();
+                break;
+            case CMD_ROTATE:
+                currentFigure.rotate();
+                break;
+            case CMD_RIGHT:
+                currentFigure.right();
+                break;
+            case CMD_DROP:
+                int droppedLinesCount = currentFigure.drop();
+                gameScore += maybeAdjustScoreIncrement((droppedLinesCount * currentLevel * currentLevel) / 5);
+                afterFigureIsDown();
+                break;
+            default:
+                return false;
+        }
+        replayRecorder.record(tickCount, command);
+        return true;
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.games.blocks.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Finished games kept on the device: lifetime totals and the best scores, overall and per
+ * starting level.
+ *
+ * <p> Every game is appended to a log of fixed size records, see {@link HistoryFormat}, and
+ * the totals and the top scores are kept in a small index next to it. Opening a history only
+ * reads the index, and the log records that the index does not cover yet, e.g. after a crash
+ * between the two writes, so it takes the same time after tens of thousands of games as after
+ * one. A missing or broken index is rebuilt from the log.
+ *
+ * <p> The methods do file I/O, so they must not be called on the UI thread. Games played with
+ * autoplay count in the totals, but not in the top scores.
+ * <p> Using 'synchronized' on public methods for simplicity.
+ */
+public final class GameHistory {
+
+    // Number of best scores kept in each top list.
+    public static final int TOP_SIZE = 10;
+
+    static final String LOG_FILE_NAME = "history.log";
+    static final String INDEX_FILE_NAME = "history.idx";
+
+    // Fixed size part of the index, without the top lists and the checksum.
+    private static final int INDEX_HEADER_SIZE = 8 + 8 * 4 + 8 * (Figure.FT_MAX + 1);
+
+    private final File logFile;
+    private final File indexFile;
+
+    // Number of whole records in the log.
+    private long recordCount;
+
+    private long totalScore;
+    private long totalLines;
+    private long totalTicks;
+    // 0-element is total count, the rest is indexed by figure type.
+    private final long[] figureCounts = new long[Figure.FT_MAX + 1];
+
+    // Best first: of all starting levels, then of each starting level.
+    private final List<GameRecord> topScores = new ArrayList<>();
+    private final List<List<GameRecord>> levelTopScores = new ArrayList<>();
+
+    private GameHistory(File directory) {
+        logFile = new File(directory, LOG_FILE_NAME);
+        indexFile = new File(directory, INDEX_FILE_NAME);
+        for (int level = 0; level < HistoryFormat.LEVEL_COUNT; level++) {
+            levelTopScores.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Opens the history in a directory, creating the directory if needed.
+     *
+     * @throws IOException if the files cannot be read, or the log is not a history log.
+     */
+    public static GameHistory open(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        GameHistory history = new GameHistory(directory);
+        history.load();
+        return history;
+    }
+
+    /**
+     * Adds a finished game to the log and to the index.
+     */
+    public synchronized void add(GameRecord record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HistoryFormat.RECORD_SIZE);
+        record.write(buffer);
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            if (file.length() < HistoryFormat.LOG_HEADER_SIZE) {
+                writeLogHeader(file);
+            }
+            // Over a record cut short by a crash, if there is one.
+            long offset = HistoryFormat.LOG_HEADER_SIZE + recordCount * HistoryFormat.RECORD_SIZE;
+            file.seek(offset);
+            file.write(buffer.array());
+            file.setLength(offset + HistoryFormat.RECORD_SIZE);
+        }
+        recordCount++;
+        apply(record);
+        writeIndex();
+    }
+
+    public synchronized long gameCount() {
+        return recordCount;
+    }
+
+    public synchronized long totalScore() {
+        return totalScore;
+    }
+
+    public synchronized long totalLines() {
+        return totalLines;
+    }
+
+    public synchronized long totalTicks() {
+        return totalTicks;
+    }
+
+    public synchronized long totalFigures() {
+        return figureCounts[0];
+    }
+
+    /**
+     * Returns the number of figures of a given type played in all games.
+     *
+     * @param figureType from {@link Figure#FT_BRICK} to {@link Figure#FT_MAX}.
+     */
+    public synchronized long figureCount(int figureType) {
+        return figureCounts[Figure.checkFigureType(figureType)];
+    }
+
+    /**
+     * Returns the best score of a game played without autoplay, 0 if there is none.
+     */
+    public synchronized int bestScore() {
+        return topScores.isEmpty() ? 0 : topScores.get(0).score();
+    }
+
+    /**
+     * Returns up to {@link #TOP_SIZE} games with the best scores, best first. Of equal
+     * scores, the earlier game comes first.
+     */
+    public synchronized List<GameRecord> topScores() {
+        return Collections.unmodifiableList(new ArrayList<>(topScores));
+    }
+
+    /**
+     * Returns up to {@link #TOP_SIZE} games started on a given level with the best scores,
+     * best first, or an empty list for levels that have no top list of their own.
+     */
+    public synchronized List<GameRecord> topScores(int startingLevel) {
+        if (startingLevel < 0 || startingLevel >= HistoryFormat.LEVEL_COUNT) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(levelTopScores.get(startingLevel)));
+    }
+
+    private void load() throws IOException {
+        long indexedCount = 0;
+        boolean isIndexRead = false;
+        if (indexFile.isFile()) {
+            try {
+                indexedCount = readIndex();
+                isIndexRead = true;
+            } catch (IllegalArgumentException e) {
+                // Rebuilt from the whole log below.
+            }
+        }
+        long logCount = readLog(indexedCount);
+        if (logCount < 0) {
+            // The index covers more than the log, e.g. the log was replaced.
+            reset();
+            isIndexRead = false;
+            logCount = readLog(0);
+        }
+        recordCount = logCount;
+        if (!isIndexRead || indexedCount != logCount) {
+            writeIndex();
+        }
+    }
+
+    /**
+     * Applies the log records from a given one on to the totals and the top scores.
+     *
+     * @return the number of whole records in the log, or -1 if it has less than the given one.
+     */
+    private long readLog(long fromRecord) throws IOException {
+        if (!logFile.isFile()) {
+            return fromRecord > 0 ? -1 : 0;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "r")) {
+            return readLog(file, fromRecord);
+        }
+    }
+
+    private long readLog(RandomAccessFile file, long fromRecord) throws IOException {
+        FileChannel channel = file.getChannel();
+        long size = channel.size();
+        if (size < HistoryFormat.LOG_HEADER_SIZE) {
+            return fromRecord > 0 ? -1 : 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HistoryFormat.LOG_HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != HistoryFormat.LOG_MAGIC
+                || header.get(4) != HistoryFormat.VERSION) {
+            throw new IOException("Not a game history log: " + logFile);
+        }
+        long count = (size - HistoryFormat.LOG_HEADER_SIZE) / HistoryFormat.RECORD_SIZE;
+        if (count < fromRecord) {
+            return -1;
+        }
+        long from = HistoryFormat.LOG_HEADER_SIZE + fromRecord * HistoryFormat.RECORD_SIZE;
+        long to = HistoryFormat.LOG_HEADER_SIZE + count * HistoryFormat.RECORD_SIZE;
+        // The log is mapped in parts of whole records, each within the 2 GB of a buffer.
+        long maxPartSize = (Integer.MAX_VALUE / HistoryFormat.RECORD_SIZE)
+                * (long) HistoryFormat.RECORD_SIZE;
+        for (long offset = from; offset < to; offset += maxPartSize) {
+            ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                    Math.min(maxPartSize, to - offset));
+            while (records.hasRemaining()) {
+                apply(GameRecord.read(records));
+            }
+        }
+        return count;
+    }
+
+    private static void writeLogHeader(RandomAccessFile file) throws IOException {
+        file.setLength(0);
+        file.writeInt(HistoryFormat.LOG_MAGIC);
+        file.writeByte(HistoryFormat.VERSION);
+        file.write(new byte[3]);
+    }
+
+    /**
+     * Adds a game to the totals and to the top scores.
+     */
+    private void apply(GameRecord record) {
+        totalScore += record.score();
+        totalLines += record.lines();
+        totalTicks += record.tickCount();
+        figureCounts[0] += record.figuresCount();
+        for (int type = Figure.FT_BRICK; type <= Figure.FT_MAX; type++) {
+            figureCounts[type] += record.figureCount(type);
+        }
+        if (record.isAutoPlayed()) {
+            return;
+        }
+        addToTop(topScores, record);
+        if (record.startingLevel() < HistoryFormat.LEVEL_COUNT) {
+            addToTop(levelTopScores.get(record.startingLevel()), record);
+        }
+    }
+
+    private static void addToTop(List<GameRecord> top, GameRecord record) {
+        int position = top.size();
+        while (position > 0 && top.get(position - 1).score() < record.score()) {
+            position--;
+        }
+        if (position < TOP_SIZE) {
+            top.add(position, record);
+            if (top.size() > TOP_SIZE) {
+                top.remove(TOP_SIZE);
+            }
+        }
+    }
+
+    private void reset() {
+        totalScore = 0;
+        totalLines = 0;
+        totalTicks = 0;
+        for (int i = 0; i < figureCounts.length; i++) {
+            figureCounts[i] = 0;
+        }
+        topScores.clear();
+        for (List<GameRecord> top : levelTopScores) {
+            top.clear();
+        }
+    }
+
+    /**
+     * Reads the index into the totals and the top scores.
+     *
+     * @return the number of log records that the index covers.
+     * @throws IllegalArgumentException if the index is broken, leaving nothing read.
+     */
+    private long readIndex() throws IOException {
+        byte[] bytes;
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "r")) {
+            if (file.length() > indexSize()) {
+                throw new IllegalArgumentException("Game history index is too long");
+            }
+            bytes = new byte[(int) file.length()];
+            file.readFully(bytes);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes, 0, bytes.length - 4);
+            if ((int) checksum.getValue() != buffer.getInt(bytes.length - 4)
+                    || buffer.getInt() != HistoryFormat.INDEX_MAGIC
+                    || buffer.get() != HistoryFormat.VERSION
+                    || buffer.get() != TOP_SIZE
+                    || buffer.get() != HistoryFormat.LEVEL_COUNT) {
+                throw new IllegalArgumentException("Broken game history index");
+            }
+            buffer.get();
+            long count = buffer.getLong();
+            totalScore = buffer.getLong();
+            totalLines = buffer.getLong();
+            totalTicks = buffer.getLong();
+            for (int i = 0; i < figureCounts.length; i++) {
+                figureCounts[i] = buffer.getLong();
+            }
+            readTop(buffer, topScores);
+            for (List<GameRecord> top : levelTopScores) {
+                readTop(buffer, top);
+            }
+            return count;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            reset();
+            throw new IllegalArgumentException("Truncated game history index", e);
+        } catch (IllegalArgumentException e) {
+            reset();
+            throw e;
+        }
+    }
+
+    private static void readTop(ByteBuffer buffer, List<GameRecord> top) {
+        int count = buffer.get();
+        if (count < 0 || count > TOP_SIZE) {
+            throw new IllegalArgumentException("Broken game history index");
+        }
+        for (int i = 0; i < count; i++) {
+            top.add(GameRecord.read(buffer));
+        }
+    }
+
+    /**
+     * Replaces the index with the current totals and top scores.
+     */
+    private void writeIndex() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(indexSize());
+        buffer.putInt(HistoryFormat.INDEX_MAGIC);
+        buffer.put((byte) HistoryFormat.VERSION);
+        buffer.put((byte) TOP_SIZE);
+        buffer.put((byte) HistoryFormat.LEVEL_COUNT);
+        buffer.put((byte) 0);
+        buffer.putLong(recordCount);
+        buffer.putLong(totalScore);
+        buffer.putLong(totalLines);
+        buffer.putLong(totalTicks);
+        for (long count : figureCounts) {
+            buffer.putLong(count);
+        }
+        writeTop(buffer, topScores);
+        for (List<GameRecord> top : levelTopScores) {
+            writeTop(buffer, top);
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) checksum.getValue());
+
+        File newIndexFile = new File(indexFile.getPath() + ".new");
+        try (FileOutputStream out = new FileOutputStream(newIndexFile)) {
+            out.write(buffer.array(), 0, buffer.position());
+            out.getFD().sync();
+        }
+        if (!newIndexFile.renameTo(indexFile)) {
+            throw new IOException("Cannot replace " + indexFile);
+        }
+    }
+
+    private static void writeTop(ByteBuffer buffer, List<GameRecord> top) {
+        buffer.put((byte) top.size());
+        for (GameRecord record : top) {
+            record.write(buffer);
+        }
+    }
+
+    /**
+     * Returns the size of an index with full top lists.
+     */
+    private static int indexSize() {
+        return INDEX_HEADER_SIZE
+                + (1 + HistoryFormat.LEVEL_COUNT) * (1 + TOP_SIZE * HistoryFormat.RECORD_SIZE) + 4;
+    }
+}
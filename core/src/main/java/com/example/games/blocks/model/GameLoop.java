@@ -0,0 +1,110 @@
+package com.example.games.blocks.model;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs game ticks on one dedicated thread at fixed-rate deadlines.
+ *
+ * <p> Deadlines are kept on the {@link System#nanoTime()} scale and advanced by the tick
+ * period, so the time spent in a tick does not add up to the period. A loop that fell behind
+ * runs the missed ticks back to back, up to {@link #MAX_CATCH_UP_TICKS}; if it is even more
+ * late (e.g. the device was asleep) it skips them and restarts from now.
+ *
+ * <p> Between ticks the loop thread can be woken up with {@link #wakeUp()}, e.g. to handle
+ * input without waiting for the next tick. Waking up does not move the tick deadlines.
+ *
+ * <p> There is at most one loop thread. Starting the loop again replaces the thread, and a
+ * replaced or stopped thread exits without running any more ticks.
+ */
+class GameLoop {
+
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    interface Callback {
+        /**
+         * Called on the loop thread once per tick.
+         *
+         * @return time until the next tick, in nanoseconds.
+         */
+        long onTick();
+
+        /**
+         * Called on the loop thread before every tick and after every wake up.
+         */
+        void onWakeUp();
+    }
+
+    private final Callback callback;
+
+    // Current loop thread, null if the loop is stopped.
+    private volatile Thread loopThread;
+
+    GameLoop(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Starts the loop, replacing the loop thread if it is already running.
+     *
+     * @param firstTickDelayNanos time until the first tick, in nanoseconds.
+     */
+    synchronized void start(long firstTickDelayNanos) {
+        stop();
+        Thread thread = new Thread(() -> run(firstTickDelayNanos), "GameLoop");
+        thread.setDaemon(true);
+        loopThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the loop. Does not wait for the loop thread to exit, so it is safe to call from a
+     * tick or while holding a lock that ticks take.
+     */
+    synchronized void stop() {
+        Thread thread = loopThread;
+        loopThread = null;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Wakes up the loop thread, if it is waiting for the next tick.
+     */
+    void wakeUp() {
+        Thread thread = loopThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Returns true if called from the current loop thread. Ticks use this under their lock to
+     * ignore a replaced thread that was already about to run a tick.
+     */
+    boolean isLoopThread() {
+        return loopThread == Thread.currentThread();
+    }
+
+    private void run(long firstTickDelayNanos) {
+        long deadline = System.nanoTime() + firstTickDelayNanos;
+        while (isLoopThread()) {
+            callback.onWakeUp();
+
+            long waitNanos = deadline - System.nanoTime();
+            if (waitNanos > 0) {
+                // Re-checks the deadline and the loop state after any wake up.
+                LockSupport.parkNanos(this, waitNanos);
+                continue;
+            }
+
+            long periodNanos = callback.onTick();
+            deadline += periodNanos;
+
+            long now = System.nanoTime();
+            if (now - deadline > MAX_CATCH_UP_TICKS * periodNanos) {
+                deadline = now + periodNanos;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.games.blocks.model;
+
+import java.util.Locale;
+
+/**
+ * Latency histograms of a running game, see {@link Game#setMetrics(GameMetrics)}:
+ * <ul>
+ * <li>tick: game logic of one Game loop tick, gravity and autoplay included;</li>
+ * <li>input: from posting an input command to the end of painting the first frame showing
+ * its effect;</li>
+ * <li>render: painting of one frame by the renderer;</li>
+ * <li>lock wait: time the Game loop thread waits for the Game lock, e.g. while the UI thread
+ * holds it.</li>
+ * </ul>
+ * A game without metrics measures nothing, so they cost nothing when they are not needed.
+ */
+public final class GameMetrics {
+
+    // Number of lines of formatLine().
+    public static final int LINE_COUNT = 4;
+
+    // Enough chars for any line of formatLine().
+    public static final int MAX_LINE_LENGTH = 96;
+
+    private final LatencyHistogram tick = new LatencyHistogram("tick");
+    private final LatencyHistogram inputToFrame = new LatencyHistogram("input");
+    private final LatencyHistogram render = new LatencyHistogram("render");
+    private final LatencyHistogram lockWait = new LatencyHistogram("lock wait");
+
+    public LatencyHistogram tick() {
+        return tick;
+    }
+
+    public LatencyHistogram inputToFrame() {
+        return inputToFrame;
+    }
+
+    public LatencyHistogram render() {
+        return render;
+    }
+
+    public LatencyHistogram lockWait() {
+        return lockWait;
+    }
+
+    public LatencyHistogram histogram(int index) {
+        switch (index) {
+            case 0:
+                return tick;
+            case 1:
+                return inputToFrame;
+            case 2:
+                return render;
+            default:
+                return lockWait;
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < LINE_COUNT; i++) {
+            histogram(i).reset();
+        }
+    }
+
+    /**
+     * Formats a short summary of one histogram, e.g. for a debug overlay, without allocating.
+     *
+     * @param index  of the histogram, from 0 to {@link #LINE_COUNT} - 1.
+     * @param buffer at least {@link #MAX_LINE_LENGTH} chars.
+     * @return number of written chars.
+     */
+    public int formatLine(int index, char[] buffer) {
+        LatencyHistogram histogram = histogram(index);
+        int length = TextChars.append(buffer, 0, histogram.name());
+        length = TextChars.append(buffer, length, " n ");
+        length = TextChars.append(buffer, length, histogram.count());
+        length = TextChars.append(buffer, length, " p50 ");
+        length = appendMicros(buffer, length, histogram.percentileNanos(50));
+        length = TextChars.append(buffer, length, " p99 ");
+        length = appendMicros(buffer, length, histogram.percentileNanos(99));
+        length = TextChars.append(buffer, length, " max ");
+        return appendMicros(buffer, length, histogram.maxNanos());
+    }
+
+    private static int appendMicros(char[] buffer, int offset, long nanos) {
+        offset = TextChars.append(buffer, offset, (nanos + 500) / 1000);
+        return TextChars.append(buffer, offset, "us");
+    }
+
+    /**
+     * Returns a detailed text report of all histograms, in microseconds.
+     */
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.US, "%-10s %10s %9s %9s %9s %9s %9s %9s%n",
+                "us", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+        for (int i = 0; i < LINE_COUNT; i++) {
+            LatencyHistogram histogram = histogram(i);
+            text.append(String.format(Locale.US, "%-10s %10d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    histogram.name(), histogram.count(),
+                    histogram.meanNanos() / 1000.0,
+                    histogram.percentileNanos(50) / 1000.0,
+                    histogram.percentileNanos(90) / 1000.0,
+                    histogram.percentileNanos(99) / 1000.0,
+                    histogram.percentileNanos(99.9) / 1000.0,
+                    histogram.maxNanos() / 1000.0));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.games.blocks.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Result of one finished game, as kept by a {@link GameHistory}. Immutable.
+ */
+public final class GameRecord {
+
+    private final long endTimeMillis;
+    private final long seed;
+    private final int tickCount;
+    private final int score;
+    private final int lines;
+    // 0-element is total count, the rest is indexed by figure type.
+    private final int[] figureCounts;
+    private final int startingLevel;
+    private final int level;
+    private final int randomizerCode;
+    private final int flags;
+    private final int fieldWidth;
+    private final int fieldHeight;
+
+    GameRecord(long endTimeMillis, long seed, int tickCount, int score, int lines,
+               int[] figureCounts, int startingLevel, int level, int randomizerCode, int flags,
+               int fieldWidth, int fieldHeight) {
+        this.endTimeMillis = endTimeMillis;
+        this.seed = seed;
+        this.tickCount = tickCount;
+        this.score = score;
+        this.lines = lines;
+        this.figureCounts = figureCounts.clone();
+        this.startingLevel = startingLevel;
+        this.level = level;
+        this.randomizerCode = randomizerCode;
+        this.flags = flags;
+        this.fieldWidth = fieldWidth;
+        this.fieldHeight = fieldHeight;
+    }
+
+    /**
+     * Reads a record in the {@link HistoryFormat}.
+     */
+    static GameRecord read(ByteBuffer buffer) {
+        long endTimeMillis = buffer.getLong();
+        long seed = buffer.getLong();
+        int tickCount = buffer.getInt();
+        int score = buffer.getInt();
+        int lines = buffer.getInt();
+        int[] figureCounts = new int[Figure.FT_MAX + 1];
+        for (int i = 0; i < figureCounts.length; i++) {
+            figureCounts[i] = buffer.getInt();
+        }
+        int startingLevel = buffer.get() & 0xFF;
+        int level = buffer.get() & 0xFF;
+        int randomizerCode = buffer.get() & 0xFF;
+        int flags = buffer.get() & 0xFF;
+        int fieldWidth = buffer.getShort() & 0xFFFF;
+        int fieldHeight = buffer.getShort() & 0xFFFF;
+        return new GameRecord(endTimeMillis, seed, tickCount, score, lines, figureCounts,
+                startingLevel, level, randomizerCode, flags, fieldWidth, fieldHeight);
+    }
+
+    /**
+     * Writes this record in the {@link HistoryFormat}.
+     */
+    void write(ByteBuffer buffer) {
+        buffer.putLong(endTimeMillis);
+        buffer.putLong(seed);
+        buffer.putInt(tickCount);
+        buffer.putInt(score);
+        buffer.putInt(lines);
+        for (int count : figureCounts) {
+            buffer.putInt(count);
+        }
+        buffer.put((byte) startingLevel);
+        buffer.put((byte) level);
+        buffer.put((byte) randomizerCode);
+        buffer.put((byte) flags);
+        buffer.putShort((short) fieldWidth);
+        buffer.putShort((short) fieldHeight);
+    }
+
+    /**
+     * Returns the time the game ended, in milliseconds since the epoch.
+     */
+    public long endTimeMillis() {
+        return endTimeMillis;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public int tickCount() {
+        return tickCount;
+    }
+
+    public int score() {
+        return score;
+    }
+
+    public int lines() {
+        return lines;
+    }
+
+    public int figuresCount() {
+        return figureCounts[0];
+    }
+
+    /**
+     * Returns the number of figures of a given type played in the game.
+     *
+     * @param figureType from {@link Figure#FT_BRICK} to {@link Figure#FT_MAX}.
+     */
+    public int figureCount(int figureType) {
+        return figureCounts[Figure.checkFigureType(figureType)];
+    }
+
+    public int startingLevel() {
+        return startingLevel;
+    }
+
+    /**
+     * Returns the level the game ended on.
+     */
+    public int level() {
+        return level;
+    }
+
+    public boolean isShowNextFigure() {
+        return (flags & HistoryFormat.FLAG_SHOW_NEXT_FIGURE) != 0;
+    }
+
+    /**
+     * Returns true if autoplay played any part of the game.
+     */
+    public boolean isAutoPlayed() {
+        return (flags & HistoryFormat.FLAG_AUTOPLAYED) != 0;
+    }
+
+    int randomizerCode() {
+        return randomizerCode;
+    }
+
+    public int fieldWidth() {
+        return fieldWidth;
+    }
+
+    public int fieldHeight() {
+        return fieldHeight;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.games.blocks.model;
+
+/**
+ * Draws the game state. Implemented by the platform specific UI.
+ */
+public interface GameRenderer {
+
+    /**
+     * Paints a frame. Called on the render thread, without holding the Game lock, so painting
+     * never delays the game logic or input handling.
+     *
+     * @param frame state of the game to paint, not changed until the next call.
+     */
+    void render(FrameSnapshot frame);
+}
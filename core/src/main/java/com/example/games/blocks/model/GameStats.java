@@ -0,0 +1,46 @@
+package com.example.games.blocks.model;
+
+/**
+ * Score, lines, figure count and level of a game, as copied by {@link Game#copyStats} at one
+ * version. The UI keeps one instance and copies into it at most once per frame, only when
+ * {@link Game#getStatsVersion()} has moved on.
+ */
+public final class GameStats {
+
+    private int version = -1;
+    private int score;
+    private int lines;
+    private int figuresCount;
+    private int level;
+
+    void set(int version, int score, int lines, int figuresCount, int level) {
+        this.version = version;
+        this.score = score;
+        this.lines = lines;
+        this.figuresCount = figuresCount;
+        this.level = level;
+    }
+
+    /**
+     * Returns the stats version these stats were copied at, -1 if they never were.
+     */
+    public int version() {
+        return version;
+    }
+
+    public int score() {
+        return score;
+    }
+
+    public int lines() {
+        return lines;
+    }
+
+    public int figuresCount() {
+        return figuresCount;
+    }
+
+    public int level() {
+        return level;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.games.blocks.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Speed of gravity by level, in cells per frame of a fixed frame rate. Immutable.
+ *
+ * <p> Speeds are fixed point numbers of {@link #CELL} units per cell, so a curve can go from
+ * a fraction of a cell per frame to many cells per frame, and gravity adds up the same way on
+ * every device. Every tick of a game is one frame: the speed of the current level is added to
+ * an accumulator, and the figure moves down one cell per whole cell accumulated.
+ *
+ * <p> A game levels up to the last level of its curve, and levels past the end of the curve,
+ * e.g. a starting level set too high, keep the last speed.
+ *
+ * <p> Encoded in replays and snapshots as:
+ * <pre>
+ *   frame rate            2 bytes  frames per second
+ *   level count           1 byte
+ *   speeds                4 bytes each, per level from 0
+ * </pre>
+ */
+public final class GravityCurve {
+
+    // Fixed point units of one cell.
+    public static final int CELL_BITS = 16;
+    public static final int CELL = 1 << CELL_BITS;
+
+    public static final int MAX_FRAME_RATE = 1000;
+    public static final int MAX_LEVEL_COUNT = 100;
+    // A whole field of the biggest size in one frame, more makes no difference.
+    public static final int MAX_CELLS_PER_FRAME = Game.MAX_FIELD_SIZE * CELL;
+
+    private static final int STANDARD_FRAME_RATE = 60;
+
+    /**
+     * Speeds up geometrically from one cell per second at level 0 to a few cells per frame at
+     * level 15, and 20 cells per frame from level 18. Opt-in, games are {@link #CLASSIC} by
+     * default.
+     */
+    public static final GravityCurve STANDARD = standard();
+
+    /**
+     * The original speeds, one cell per (10 - level) * 70 ms and at most one per 35 ms, up
+     * to level 10. The default of games.
+     */
+    public static final GravityCurve CLASSIC = classic();
+
+    // Replays before version 3 ran one gravity step per tick, whatever the level.
+    static final GravityCurve ONE_CELL_PER_FRAME = oneCellPerFrame();
+
+    private final int frameRate;
+    private final int[] cellsPerFrame;
+
+    /**
+     * @param frameRate     frames per second, from 1 to {@link #MAX_FRAME_RATE}.
+     * @param cellsPerFrame speed of every level from 0 in {@link #CELL} units, from 1 to
+     *                      {@link #MAX_CELLS_PER_FRAME}.
+     * @throws IllegalArgumentException if any of them is out of range.
+     */
+    public GravityCurve(int frameRate, int[] cellsPerFrame) {
+        if (frameRate < 1 || frameRate > MAX_FRAME_RATE) {
+            throw new IllegalArgumentException("Frame rate " + frameRate + " is out of range");
+        }
+        if (cellsPerFrame.length < 1 || cellsPerFrame.length > MAX_LEVEL_COUNT) {
+            throw new IllegalArgumentException("Level count " + cellsPerFrame.length
+                    + " is out of range");
+        }
+        for (int cells : cellsPerFrame) {
+            if (cells < 1 || cells > MAX_CELLS_PER_FRAME) {
+                throw new IllegalArgumentException("Gravity " + cells + " is out of range");
+            }
+        }
+        this.frameRate = frameRate;
+        this.cellsPerFrame = cellsPerFrame.clone();
+    }
+
+    /**
+     * Creates a curve from speeds in cells per frame, rounded to {@link #CELL} units.
+     */
+    public static GravityCurve of(int frameRate, double... cellsPerFrame) {
+        int[] speeds = new int[cellsPerFrame.length];
+        for (int level = 0; level < speeds.length; level++) {
+            speeds[level] = toCells(cellsPerFrame[level]);
+        }
+        return new GravityCurve(frameRate, speeds);
+    }
+
+    /**
+     * Returns a curve with the same speeds in cells per second at another frame rate, e.g. for
+     * a server that sends fewer frames.
+     */
+    public GravityCurve atFrameRate(int frameRate) {
+        if (frameRate == this.frameRate) {
+            return this;
+        }
+        double[] speeds = new double[cellsPerFrame.length];
+        for (int level = 0; level < speeds.length; level++) {
+            speeds[level] = (double) cellsPerFrame[level] * this.frameRate / frameRate / CELL;
+        }
+        return of(frameRate, speeds);
+    }
+
+    /**
+     * Returns a predefined curve by its name, "standard" or "classic".
+     *
+     * @throws IllegalArgumentException if there is no curve of that name.
+     */
+    public static GravityCurve forName(String name) {
+        switch (name) {
+            case "standard":
+                return STANDARD;
+            case "classic":
+                return CLASSIC;
+            default:
+                throw new IllegalArgumentException("Unknown gravity curve: " + name);
+        }
+    }
+
+    public int frameRate() {
+        return frameRate;
+    }
+
+    /**
+     * Returns time between frames.
+     */
+    public long framePeriodNanos() {
+        return 1_000_000_000L / frameRate;
+    }
+
+    public int levelCount() {
+        return cellsPerFrame.length;
+    }
+
+    /**
+     * Returns the last level a game can reach by playing figures.
+     */
+    public int maxLevel() {
+        return cellsPerFrame.length - 1;
+    }
+
+    /**
+     * Returns the speed of gravity on a level, in {@link #CELL} units per frame.
+     */
+    public int cellsPerFrame(int level) {
+        return cellsPerFrame[Math.max(0, Math.min(level, cellsPerFrame.length - 1))];
+    }
+
+    int encodedSize() {
+        return 2 + 1 + 4 * cellsPerFrame.length;
+    }
+
+    void write(ByteBuffer buffer) {
+        buffer.putShort((short) frameRate);
+        buffer.put((byte) cellsPerFrame.length);
+        for (int cells : cellsPerFrame) {
+            buffer.putInt(cells);
+        }
+    }
+
+    /**
+     * Returns the number of bytes of an encoded curve at an offset of a buffer, from its level
+     * count alone.
+     */
+    static int encodedSize(ByteBuffer buffer, int offset) {
+        return 2 + 1 + 4 * (buffer.get(offset + 2) & 0xFF);
+    }
+
+    /**
+     * Reads an encoded curve at an offset of a buffer, without changing its position.
+     *
+     * @throws IllegalArgumentException if the curve is out of range.
+     */
+    static GravityCurve read(ByteBuffer buffer, int offset) {
+        int frameRate = buffer.getShort(offset) & 0xFFFF;
+        int[] cellsPerFrame = new int[buffer.get(offset + 2) & 0xFF];
+        for (int level = 0; level < cellsPerFrame.length; level++) {
+            cellsPerFrame[level] = buffer.getInt(offset + 3 + 4 * level);
+        }
+        return new GravityCurve(frameRate, cellsPerFrame);
+    }
+
+    private static int toCells(double cellsPerFrame) {
+        return (int) Math.max(1, Math.min(Math.round(cellsPerFrame * CELL), MAX_CELLS_PER_FRAME));
+    }
+
+    private static GravityCurve standard() {
+        double[] speeds = new double[20];
+        for (int level = 0; level < speeds.length; level++) {
+            double secondsPerCell = Math.pow(0.8 - level * 0.007, level);
+            speeds[level] = Math.min(1 / (secondsPerCell * STANDARD_FRAME_RATE), 20);
+        }
+        return of(STANDARD_FRAME_RATE, speeds);
+    }
+
+    private static GravityCurve classic() {
+        double[] speeds = new double[11];
+        for (int level = 0; level < speeds.length; level++) {
+            int periodMillis = Math.max((10 - level) * 70, 35);
+            speeds[level] = 1000.0 / STANDARD_FRAME_RATE / periodMillis;
+        }
+        return of(STANDARD_FRAME_RATE, speeds);
+    }
+
+    private static GravityCurve oneCellPerFrame() {
+        int[] speeds = new int[11];
+        Arrays.fill(speeds, CELL);
+        return new GravityCurve(STANDARD_FRAME_RATE, speeds);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.games.blocks.model;
+
+/**
+ * Binary formats of the files of a {@link GameHistory}. All numbers are big endian.
+ *
+ * <p> The log holds every finished game, and is only ever appended to:
+ * <pre>
+ *   magic                 4 bytes  "GOBH"
+ *   version               1 byte   {@link #VERSION}
+ *   reserved              3 bytes  0
+ *   records               {@link #RECORD_SIZE} bytes each, oldest first
+ * </pre>
+ * A record:
+ * <pre>
+ *   end time              8 bytes  milliseconds since the epoch
+ *   seed                  8 bytes
+ *   tick count            4 bytes
+ *   score                 4 bytes
+ *   lines                 4 bytes
+ *   figure counts         4 bytes each, total count and then per figure type
+ *   starting level        1 byte
+ *   level reached         1 byte
+ *   randomizer            1 byte   ReplayFormat.RANDOMIZER_* code
+ *   flags                 1 byte   FLAG_* bits
+ *   field width, height   2 bytes each
+ * </pre>
+ * A record cut short by a crash is ignored, and overwritten by the next one.
+ *
+ * <p> The index holds what is read on every start, so it does not grow with the history:
+ * <pre>
+ *   magic                 4 bytes  "GOBI"
+ *   version               1 byte   {@link #VERSION}
+ *   top size              1 byte   {@link GameHistory#TOP_SIZE}
+ *   level count           1 byte   {@link #LEVEL_COUNT}
+ *   reserved              1 byte   0
+ *   record count          8 bytes  number of log records the index covers
+ *   total score           8 bytes
+ *   total lines           8 bytes
+ *   total ticks           8 bytes
+ *   figure counts         8 bytes each, total count and then per figure type
+ *   top scores            1 byte count, then records, best first: of all starting levels,
+ *                         then of each starting level from 0 to LEVEL_COUNT - 1
+ *   checksum              4 bytes  CRC-32 of all the bytes before it
+ * </pre>
+ * The index is replaced as a whole, by renaming a new file over it.
+ */
+final class HistoryFormat {
+
+    static final int LOG_MAGIC = 0x474F4248;
+    static final int INDEX_MAGIC = 0x474F4249;
+    static final int VERSION = 1;
+
+    static final int LOG_HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 8 + 8 + 4 + 4 + 4 + 4 * (Figure.FT_MAX + 1) + 4 + 2 + 2;
+
+    static final int FLAG_SHOW_NEXT_FIGURE = 1;
+    static final int FLAG_AUTOPLAYED = 2;
+
+    // Starting levels with a top list of their own, from 0. Games of higher starting levels
+    // are only in the top list of all levels.
+    static final int LEVEL_COUNT = 10;
+
+    private HistoryFormat() {
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.games.blocks.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Chooses figure types at random, but re-rolls a few times if the type is one of the
+ * recently played ones. Long droughts and repeats become rare, while the sequence stays
+ * less predictable than with {@link BagRandomizer}.
+ */
+public class HistoryRandomizer implements FigureRandomizer {
+
+    private static final int HISTORY_SIZE = 4;
+    private static final int ROLLS = 4;
+
+    private final FastRandom random = new FastRandom(0);
+
+    // Recently played figure types, used as a ring buffer.
+    private final int[] history = new int[HISTORY_SIZE];
+    private int historyPosition;
+
+    @Override
+    public void reset(long seed) {
+        random.setSeed(seed);
+        // Start with the 'hard' figures in history, so they don't come first.
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            history[i] = (i % 2 == 0) ? Figure.FT_Z_LEFT : Figure.FT_Z_RIGHT;
+        }
+        historyPosition = 0;
+    }
+
+    @Override
+    public int nextFigureType() {
+        int figureType = 0;
+        for (int roll = 0; roll < ROLLS; roll++) {
+            figureType = random.nextInt(Figure.FT_MAX) + 1;
+            if (!isInHistory(figureType)) {
+                break;
+            }
+        }
+        history[historyPosition] = figureType;
+        historyPosition = (historyPosition + 1) % HISTORY_SIZE;
+        return figureType;
+    }
+
+    @Override
+    public void writeState(ByteBuffer buffer) {
+        buffer.putLong(random.state());
+        buffer.put((byte) historyPosition);
+        for (int type : history) {
+            buffer.put((byte) type);
+        }
+    }
+
+    @Override
+    public void readState(ByteBuffer buffer) {
+        random.setSeed(buffer.getLong());
+        historyPosition = buffer.get();
+        if (historyPosition < 0 || historyPosition >= HISTORY_SIZE) {
+            throw new IllegalArgumentException("Broken history state");
+        }
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            history[i] = Figure.checkFigureType(buffer.get());
+        }
+    }
+
+    private boolean isInHistory(int figureType) {
+        for (int type : history) {
+            if (type == figureType) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
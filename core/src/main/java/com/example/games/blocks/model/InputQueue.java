@@ -0,0 +1,111 @@
+package com.example.games.blocks.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of timestamped input commands, for many producers and one consumer
+ * at a time.
+ *
+ * <p> Producers claim a slot with a CAS on the tail and publish it by advancing the slot
+ * sequence number (Vyukov's bounded queue). The consumer needs no atomic updates, so taking
+ * commands is cheap, but all polls must be serialized by the caller. Nothing is allocated
+ * after construction.
+ */
+class InputQueue {
+
+    private final int mask;
+
+    // Per slot: position + 1 when filled, position + capacity when free for the next round.
+    private final AtomicLongArray sequences;
+    private final int[] commands;
+    private final long[] timestamps;
+
+    // Next position to fill by producers.
+    private final AtomicLong tail = new AtomicLong();
+
+    // Next position to take by the consumer.
+    private long head;
+
+    // Timestamp of the command returned by the last poll().
+    private long polledTimestampNanos;
+
+    /**
+     * @param capacity maximal number of queued commands, a power of 2.
+     */
+    InputQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+        }
+        mask = capacity - 1;
+        sequences = new AtomicLongArray(capacity);
+        commands = new int[capacity];
+        timestamps = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds a command to the queue. Safe to call from any thread.
+     *
+     * @param command        non-zero command code.
+     * @param timestampNanos time the command was issued, on the {@link System#nanoTime()} scale.
+     * @return false if the queue is full and the command was dropped.
+     */
+    boolean offer(int command, long timestampNanos) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    commands[index] = command;
+                    timestamps[index] = timestampNanos;
+                    // Publishes the slot contents to the consumer.
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The consumer has not freed this slot yet, the queue is full.
+                return false;
+            } else {
+                // Another producer has taken this position.
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest command from the queue. Calls must be serialized.
+     *
+     * @return the command, or 0 if the queue is empty.
+     */
+    int poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return 0;
+        }
+        int command = commands[index];
+        polledTimestampNanos = timestamps[index];
+        // Frees the slot for the producers of the next round.
+        sequences.lazySet(index, head + mask + 1);
+        head++;
+        return command;
+    }
+
+    /**
+     * Returns the timestamp of the command returned by the last {@link #poll()}.
+     */
+    long polledTimestampNanos() {
+        return polledTimestampNanos;
+    }
+
+    /**
+     * Returns true if there is no command to take. Only exact when called by the consumer.
+     */
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.games.blocks.model;
+
+import static com.example.games.blocks.model.Figure.FIGURE_SIZE;
+
+/**
+ * Finds every final placement of a figure that the player can reach from its current position.
+ *
+ * <p> Positions are searched breadth first over (rotation state, anchor X, anchor Y), moving
+ * with the left, right and rotate commands the player has, and down by waiting for gravity.
+ * Every position found is dropped, and the distinct landing positions are the placements, so
+ * placements under overhangs are found too. The shortest sequence of commands and waits to
+ * each placement is kept.
+ *
+ * <p> Rows above the stack of blocks are all empty, so a figure moves the same way in any of
+ * them. Below the first few rows, where the top border may still block a rotation, the figure
+ * falls through the rest of the empty rows in one step. So the search and its memory grow with
+ * the height of the stack, not of the field, and nothing is allocated once the stack has been
+ * at its highest. The memory grows at least twice as large each time, up to a full field.
+ */
+class Placements {
+
+    // Path step that waits for gravity to move the figure one row down.
+    static final int WAIT = 0;
+
+    // Lowest anchor X that a figure can have, as the bounding box may start right of it.
+    private static final int MIN_ANCHOR_X = -FIGURE_SIZE;
+
+    private static final int MAX_ROTATIONS = 4;
+
+    private final int fieldHeight;
+
+    // Number of anchor X values, and of anchor X and Y pairs, per rotation state.
+    private final int rowSpan;
+    private int rotationSpan;
+
+    // Anchor Y of the first searched row, and of the last row before the empty rows the
+    // figure falls through, and of the row it falls to.
+    private int startY;
+    private int fallFromY;
+    private int fallToY;
+
+    // Search state per position, indexed by position number.
+    private int[] visitedMarks = new int[0];
+    private int[] parents = new int[0];
+    private int[] moves = new int[0];
+    private int[] landingMarks = new int[0];
+    private int mark;
+
+    // Positions in the order they were found, also the queue of the search.
+    private int[] positions = new int[0];
+    private int positionCount;
+
+    // Per placement: the landing position and the position it is dropped from.
+    private int[] landings = new int[0];
+    private int[] sources = new int[0];
+    private int count;
+
+    /**
+     * @param fieldWidth  width of the fields to search, without borders.
+     * @param fieldHeight height of the fields to search, without borders.
+     */
+    Placements(int fieldWidth, int fieldHeight) {
+        this.fieldHeight = fieldHeight;
+        rowSpan = fieldWidth + 2 - MIN_ANCHOR_X;
+    }
+
+    /**
+     * Finds the placements of a figure.
+     *
+     * @param rotation rotation state of the figure.
+     * @param x        anchor X of the figure.
+     * @param y        anchor Y of the figure.
+     * @return number of placements, 0 if the figure does not fit at its position.
+     */
+    int find(Board board, int figureType, int rotation, int x, int y) {
+        positionCount = 0;
+        count = 0;
+        mark++;
+        if (!FigureShapes.fits(board, figureType, rotation, x, y)) {
+            return 0;
+        }
+        // Cells of a figure are less than FIGURE_SIZE rows from its anchor, so below the first
+        // FIGURE_SIZE rows the top border blocks nothing, and above this row only empty rows
+        // are covered.
+        int lowestEmptyY = board.topY() - FIGURE_SIZE;
+        startY = y;
+        fallFromY = y + FIGURE_SIZE - 1;
+        fallToY = Math.max(fallFromY + 1, lowestEmptyY);
+        setRowCount(FIGURE_SIZE + fieldHeight + 2 + FIGURE_SIZE - fallToY);
+
+        visit(position(rotation, x, y), -1, WAIT);
+        for (int head = 0; head < positionCount; head++) {
+            int position = positions[head];
+            int r = rotationOf(position);
+            int px = xOf(position);
+            int py = yOf(position);
+
+            int landing = position(r, px,
+                    py + FigureShapes.dropDistance(board, figureType, r, px, py));
+            if (landingMarks[landing] != mark) {
+                landingMarks[landing] = mark;
+                landings[count] = landing;
+                sources[count] = position;
+                count++;
+            }
+
+            if (FigureShapes.fits(board, figureType, r, px - 1, py)) {
+                visit(position(r, px - 1, py), position, Game.CMD_LEFT);
+            }
+            if (FigureShapes.fits(board, figureType, r, px + 1, py)) {
+                visit(position(r, px + 1, py), position, Game.CMD_RIGHT);
+            }
+            int nextR = FigureShapes.nextRotation(figureType, r);
+            if (FigureShapes.fits(board, figureType, nextR, px, py)) {
+                visit(position(nextR, px, py), position, Game.CMD_ROTATE);
+            }
+            int nextY = py == fallFromY ? fallToY : py + 1;
+            if (FigureShapes.fits(board, figureType, r, px, nextY)) {
+                visit(position(r, px, nextY), position, WAIT);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Makes room for the positions in a number of rows, forgetting the previous search.
+     */
+    private void setRowCount(int rowCount) {
+        rotationSpan = rowSpan * rowCount;
+        int size = MAX_ROTATIONS * rotationSpan;
+        if (size > visitedMarks.length) {
+            // At least doubles, up to the rows of a full field, so a stack only a little higher
+            // than before does not allocate again.
+            int maxRowCount = fieldHeight + 3 * FIGURE_SIZE + 2;
+            int grownRowCount = 2 * visitedMarks.length / (MAX_ROTATIONS * rowSpan);
+            size = MAX_ROTATIONS * rowSpan
+                    * Math.max(rowCount, Math.min(grownRowCount, maxRowCount));
+            visitedMarks = new int[size];
+            parents = new int[size];
+            moves = new int[size];
+            landingMarks = new int[size];
+            positions = new int[size];
+            landings = new int[size];
+            sources = new int[size];
+            mark = 1;
+        }
+    }
+
+    private int position(int rotation, int x, int y) {
+        int row = y <= fallFromY ? y - startY : y - fallToY + FIGURE_SIZE;
+        return rotation * rotationSpan + row * rowSpan + x - MIN_ANCHOR_X;
+    }
+
+    private int rotationOf(int position) {
+        return position / rotationSpan;
+    }
+
+    private int xOf(int position) {
+        return position % rowSpan + MIN_ANCHOR_X;
+    }
+
+    private int yOf(int position) {
+        int row = position % rotationSpan / rowSpan;
+        return row < FIGURE_SIZE ? startY + row : fallToY + row - FIGURE_SIZE;
+    }
+
+    private void visit(int position, int parent, int move) {
+        if (visitedMarks[position] == mark) {
+            return;
+        }
+        visitedMarks[position] = mark;
+        parents[position] = parent;
+        moves[position] = move;
+        positions[positionCount++] = position;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int rotation(int placement) {
+        return rotationOf(landings[placement]);
+    }
+
+    int x(int placement) {
+        return xOf(landings[placement]);
+    }
+
+    /**
+     * Returns the anchor Y of a placement, after the drop.
+     */
+    int landingY(int placement) {
+        return yOf(landings[placement]);
+    }
+
+    /**
+     * Writes the shortest sequence of steps that moves the figure from its position to where
+     * it is dropped to get to a placement, not including the drop.
+     *
+     * @param steps receives Game.CMD_LEFT, CMD_RIGHT, CMD_ROTATE or {@link #WAIT} values, at
+     *              least {@link #maxPathLength()} long.
+     * @return number of steps.
+     */
+    int pathTo(int placement, int[] steps) {
+        int length = 0;
+        for (int position = sources[placement]; parents[position] >= 0;
+             position = parents[position]) {
+            length += stepCount(position);
+        }
+        int i = length;
+        for (int position = sources[placement]; parents[position] >= 0;
+             position = parents[position]) {
+            for (int j = stepCount(position); j > 0; j--) {
+                steps[--i] = moves[position];
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns the number of steps from the parent of a position to it, more than one when
+     * the figure falls through empty rows.
+     */
+    private int stepCount(int position) {
+        return moves[position] == WAIT ? yOf(position) - yOf(parents[position]) : 1;
+    }
+
+    /**
+     * Returns the length of the longest path to a placement of the last search, and the
+     * highest possible number of its placements.
+     */
+    int maxPathLength() {
+        return positions.length + fieldHeight;
+    }
+}
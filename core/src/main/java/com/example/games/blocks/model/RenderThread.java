@@ -0,0 +1,59 @@
+package com.example.games.blocks.model;
+
+/**
+ * Passes the latest published frames to a renderer, on a dedicated thread.
+ */
+class RenderThread extends Thread {
+
+    private final FrameExchange frames;
+    private final GameRenderer renderer;
+
+    // Metrics to record render times to, null if they are off.
+    private volatile GameMetrics metrics;
+
+    RenderThread(FrameExchange frames, GameRenderer renderer) {
+        super("GameRender");
+        this.frames = frames;
+        this.renderer = renderer;
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!isInterrupted()) {
+                FrameSnapshot frame = frames.awaitLatest();
+                GameMetrics metrics = this.metrics;
+                if (metrics == null) {
+                    renderer.render(frame);
+                    continue;
+                }
+                long startNanos = System.nanoTime();
+                renderer.render(frame);
+                long endNanos = System.nanoTime();
+                metrics.render().record(endNanos - startNanos);
+                if (frame.hasInput()) {
+                    metrics.inputToFrame().record(endNanos - frame.inputNanos());
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped.
+        }
+    }
+
+    void setMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Stops the thread and waits until it has finished painting the current frame.
+     */
+    void shutdown() {
+        interrupt();
+        try {
+            join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.games.blocks.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * File of many replays, read through a memory-mapped buffer.
+ *
+ * <p> The file is a 4 byte magic "GOBA" followed by the replays, each prefixed with its
+ * length as a 4 byte big endian int. Reading moves a {@link ReplayReader} over the mapped
+ * file, so scanning an archive copies no replay bytes and allocates nothing per replay.
+ * Archives are limited to 2 GB, the size of one mapped buffer.
+ */
+public final class ReplayArchive implements Closeable {
+
+    private static final int MAGIC = 0x474F4241;
+
+    private final RandomAccessFile file;
+    private final ByteBuffer buffer;
+
+    // Offset of the length of the next replay.
+    private int position;
+
+    private ReplayArchive(RandomAccessFile file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        rewind();
+    }
+
+    /**
+     * Maps an archive file for reading.
+     *
+     * @throws IOException if the file cannot be read or is not an archive.
+     */
+    public static ReplayArchive open(File archive) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(archive, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Archive is larger than 2 GB: " + archive);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < 4 || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a replay archive: " + archive);
+            }
+            return new ReplayArchive(file, buffer);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a replay to an archive file, creating the file if it does not exist.
+     */
+    public static void append(File archive, byte[] replay) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(archive, "rw")) {
+            if (file.length() == 0) {
+                file.writeInt(MAGIC);
+            }
+            file.seek(file.length());
+            file.writeInt(replay.length);
+            file.write(replay);
+        }
+    }
+
+    /**
+     * Points a reader to the next replay of the archive.
+     *
+     * @return false if there are no more replays.
+     * @throws IllegalArgumentException if the archive is broken.
+     */
+    public boolean next(ReplayReader reader) {
+        if (position + 4 > buffer.limit()) {
+            return false;
+        }
+        int length = buffer.getInt(position);
+        if (length < 0 || length > buffer.limit() - position - 4) {
+            throw new IllegalArgumentException("Truncated replay archive");
+        }
+        reader.wrap(buffer, position + 4, length);
+        position += 4 + length;
+        return true;
+    }
+
+    /**
+     * Goes back to the first replay.
+     */
+    public void rewind() {
+        position = 4;
+    }
+
+    /**
+     * Closes the file. The mapping itself is released when the buffer is garbage collected,
+     * so readers must not be used after this.
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
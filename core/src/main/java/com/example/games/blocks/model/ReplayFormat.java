@@ -0,0 +1,91 @@
+package com.example.games.blocks.model;
+
+/**
+ * Binary format of game replays.
+ *
+ * <p> A replay is a header followed by events, all bytes, with multi-byte numbers big endian:
+ * <pre>
+ *   magic            4 bytes  "GOBR"
+ *   version          1 byte   {@link #VERSION}
+ *   randomizer       1 byte   RANDOMIZER_* code
+ *   flags            1 byte   FLAG_* bits
+ *   starting level   1 byte
+ *   seed             8 bytes
+ *   field width      2 bytes  (since version 2, 10 before)
+ *   field height     2 bytes  (since version 2, 20 before)
+ *   gravity curve    see {@link GravityCurve} (since version 3, one cell per tick before)
+ *   events           one unsigned LEB128 varint per event: (tick delta &lt;&lt; 3) | event code
+ * </pre>
+ * The tick delta is the number of game ticks, i.e. frames of the gravity curve, since the
+ * previous event, or since the start for the first one, and an event applies after that many
+ * ticks. No ticks pass while the game is paused (since version 4; before, the paused ticks
+ * counted too, and {@link ReplayReader} takes them out). The last event is
+ * {@link #EVENT_END}, at the tick the recording ended. A command in the same tick as the
+ * previous event takes a single byte.
+ */
+final class ReplayFormat {
+
+    static final int MAGIC = 0x474F4252;
+    static final int VERSION = 4;
+    // Without the gravity curve.
+    static final int HEADER_SIZE = 20;
+    static final int VERSION_1_HEADER_SIZE = 16;
+
+    // Offsets of the header fields.
+    static final int VERSION_OFFSET = 4;
+    static final int RANDOMIZER_OFFSET = 5;
+    static final int FLAGS_OFFSET = 6;
+    static final int STARTING_LEVEL_OFFSET = 7;
+    static final int SEED_OFFSET = 8;
+    static final int FIELD_WIDTH_OFFSET = 16;
+    static final int FIELD_HEIGHT_OFFSET = 18;
+    static final int GRAVITY_CURVE_OFFSET = 20;
+
+    static final int FLAG_SHOW_NEXT_FIGURE = 1;
+
+    // Event codes, besides the Game.CMD_* input commands.
+    static final int EVENT_END = 0;
+    static final int EVENT_PAUSE = 5;
+    static final int EVENT_RESUME = 6;
+
+    static final int EVENT_BITS = 3;
+    static final int EVENT_MASK = (1 << EVENT_BITS) - 1;
+
+    // Figure randomizers that replays can be recorded with.
+    static final int RANDOMIZER_UNKNOWN = 0;
+    static final int RANDOMIZER_UNIFORM = 1;
+    static final int RANDOMIZER_BAG = 2;
+    static final int RANDOMIZER_HISTORY = 3;
+
+    private ReplayFormat() {
+    }
+
+    static int randomizerCode(FigureRandomizer randomizer) {
+        if (randomizer instanceof UniformRandomizer) {
+            return RANDOMIZER_UNIFORM;
+        } else if (randomizer instanceof BagRandomizer) {
+            return RANDOMIZER_BAG;
+        } else if (randomizer instanceof HistoryRandomizer) {
+            return RANDOMIZER_HISTORY;
+        }
+        return RANDOMIZER_UNKNOWN;
+    }
+
+    /**
+     * Creates the figure randomizer a replay was recorded with.
+     *
+     * @throws IllegalArgumentException if the game used a randomizer that cannot be replayed.
+     */
+    static FigureRandomizer newRandomizer(int code) {
+        switch (code) {
+            case RANDOMIZER_UNIFORM:
+                return new UniformRandomizer();
+            case RANDOMIZER_BAG:
+                return new BagRandomizer();
+            case RANDOMIZER_HISTORY:
+                return new HistoryRandomizer();
+            default:
+                throw new IllegalArgumentException("The replay has an unknown figure randomizer");
+        }
+    }
+}
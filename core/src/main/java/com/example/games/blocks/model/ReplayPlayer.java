@@ -0,0 +1,39 @@
+package com.example.games.blocks.model;
+
+/**
+ * Replays recorded games through the Game engine.
+ */
+public final class ReplayPlayer {
+
+    private ReplayPlayer() {
+    }
+
+    /**
+     * Plays a replay on a game as fast as possible, returning when the replay has ended. The
+     * game gets the settings of the recorded one, and is not played in real time from then on.
+     * It ends in the same state as the recorded game, and records the same replay.
+     *
+     * @throws IllegalArgumentException if the replay is broken or cannot be played.
+     */
+    public static void play(ReplayReader replay, Game game) {
+        replay.rewind();
+        game.setRealTime(false);
+        game.setAutoPlay(false);
+        game.setFigureRandomizer(ReplayFormat.newRandomizer(replay.randomizerCode()));
+        game.setSeed(replay.seed());
+        game.setStartingLevel(replay.startingLevel());
+        game.setFieldSize(replay.fieldWidth(), replay.fieldHeight());
+        game.setShowNextFigure(replay.isShowNextFigure());
+        game.setGravityCurve(replay.gravityCurve());
+        game.newGame();
+
+        boolean hasEvent;
+        do {
+            hasEvent = replay.nextEvent();
+            game.stepTicks(replay.tick() - game.getTickCount());
+            if (hasEvent) {
+                game.applyReplayed(replay.event());
+            }
+        } while (hasEvent);
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.games.blocks.model;
+
+import java.nio.ByteBuffer;
+
+import static com.example.games.blocks.model.ReplayFormat.EVENT_BITS;
+import static com.example.games.blocks.model.ReplayFormat.EVENT_MASK;
+
+/**
+ * Reusable view of one replay in a byte buffer, see {@link ReplayFormat}.
+ *
+ * <p> The reader reads the buffer in place with absolute gets, never copying it or changing
+ * its position, so one reader can be moved over many replays of a memory-mapped archive
+ * without allocating, and several readers can share a buffer.
+ */
+public final class ReplayReader {
+
+    private ByteBuffer buffer;
+    private int start;
+    private int end;
+    private int version;
+    private int headerSize;
+
+    // Offset of the next event to read.
+    private int position;
+
+    // The last read event and the tick it applies at.
+    private int event;
+    private int tick;
+
+    // Replays before version 4 count the ticks of pauses too. The tick as recorded, the tick
+    // the current pause started at, or -1 if there is none, and the ticks of all the pauses.
+    private int recordedTick;
+    private int pauseTick;
+    private int pausedTickCount;
+
+    /**
+     * Points this reader to a replay and rewinds it to the first event.
+     *
+     * @param offset of the replay in the buffer.
+     * @param length of the replay in bytes.
+     * @return this reader.
+     * @throws IllegalArgumentException if the bytes are not a replay of a supported version.
+     */
+    public ReplayReader wrap(ByteBuffer buffer, int offset, int length) {
+        if (length < ReplayFormat.VERSION_1_HEADER_SIZE
+                || buffer.getInt(offset) != ReplayFormat.MAGIC) {
+            throw new IllegalArgumentException("Not a replay");
+        }
+        int version = buffer.get(offset + ReplayFormat.VERSION_OFFSET);
+        if (version < 1 || version > ReplayFormat.VERSION) {
+            throw new IllegalArgumentException("Unsupported replay version " + version);
+        }
+        // The size of the gravity curve is in the header, after the fixed size part.
+        if (version >= 3 && length < ReplayFormat.HEADER_SIZE + 3) {
+            throw new IllegalArgumentException("Not a replay");
+        }
+        int headerSize = headerSize(buffer, offset, version);
+        if (length < headerSize) {
+            throw new IllegalArgumentException("Not a replay");
+        }
+        this.version = version;
+        this.buffer = buffer;
+        this.start = offset;
+        this.end = offset + length;
+        this.headerSize = headerSize;
+        rewind();
+        return this;
+    }
+
+    /**
+     * Points this reader to a replay in a byte array, e.g. from {@link Game#getReplay()}.
+     */
+    public ReplayReader wrap(byte[] replay) {
+        return wrap(ByteBuffer.wrap(replay), 0, replay.length);
+    }
+
+    /**
+     * Goes back to before the first event.
+     */
+    public void rewind() {
+        position = start + headerSize;
+        event = ReplayFormat.EVENT_END;
+        tick = 0;
+        recordedTick = 0;
+        pauseTick = -1;
+        pausedTickCount = 0;
+    }
+
+    public long seed() {
+        return buffer.getLong(start + ReplayFormat.SEED_OFFSET);
+    }
+
+    public int startingLevel() {
+        return buffer.get(start + ReplayFormat.STARTING_LEVEL_OFFSET);
+    }
+
+    public boolean isShowNextFigure() {
+        return (buffer.get(start + ReplayFormat.FLAGS_OFFSET)
+                & ReplayFormat.FLAG_SHOW_NEXT_FIGURE) != 0;
+    }
+
+    public int fieldWidth() {
+        return version == 1
+                ? Game.DEFAULT_FIELD_WIDTH
+                : buffer.getShort(start + ReplayFormat.FIELD_WIDTH_OFFSET);
+    }
+
+    public int fieldHeight() {
+        return version == 1
+                ? Game.DEFAULT_FIELD_HEIGHT
+                : buffer.getShort(start + ReplayFormat.FIELD_HEIGHT_OFFSET);
+    }
+
+    /**
+     * Returns the gravity curve the game was played with. Replays of version 1 and 2 ran one
+     * gravity step per tick.
+     *
+     * @throws IllegalArgumentException if the curve is broken.
+     */
+    public GravityCurve gravityCurve() {
+        return version < 3
+                ? GravityCurve.ONE_CELL_PER_FRAME
+                : GravityCurve.read(buffer, start + ReplayFormat.GRAVITY_CURVE_OFFSET);
+    }
+
+    private static int headerSize(ByteBuffer buffer, int offset, int version) {
+        switch (version) {
+            case 1:
+                return ReplayFormat.VERSION_1_HEADER_SIZE;
+            case 2:
+                return ReplayFormat.HEADER_SIZE;
+            default:
+                return ReplayFormat.HEADER_SIZE + GravityCurve.encodedSize(buffer,
+                        offset + ReplayFormat.GRAVITY_CURVE_OFFSET);
+        }
+    }
+
+    int randomizerCode() {
+        return buffer.get(start + ReplayFormat.RANDOMIZER_OFFSET);
+    }
+
+    /**
+     * Reads the next event.
+     *
+     * @return false after the end of the replay has been read; {@link #tick()} is then the
+     * tick the recording ended at.
+     * @throws IllegalArgumentException if the replay is truncated.
+     */
+    public boolean nextEvent() {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (position >= end) {
+                throw new IllegalArgumentException("Truncated replay");
+            }
+            b = buffer.get(position++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        event = (int) (value & EVENT_MASK);
+        recordedTick += (int) (value >>> EVENT_BITS);
+        if (version < 4) {
+            // Paused as the game is: only by a pause when running, and by a resume when paused.
+            if (event == ReplayFormat.EVENT_PAUSE && pauseTick < 0) {
+                pauseTick = recordedTick;
+            } else if (event == ReplayFormat.EVENT_RESUME && pauseTick >= 0) {
+                pausedTickCount += recordedTick - pauseTick;
+                pauseTick = -1;
+            }
+            tick = (pauseTick >= 0 ? pauseTick : recordedTick) - pausedTickCount;
+        } else {
+            tick = recordedTick;
+        }
+        return event != ReplayFormat.EVENT_END;
+    }
+
+    /**
+     * Returns the number of game ticks run before the last read event, not counting the ticks
+     * the game was paused for.
+     */
+    public int tick() {
+        return tick;
+    }
+
+    /**
+     * Returns the last read event: a Game.CMD_* command, or a pause or resume event.
+     */
+    public int event() {
+        return event;
+    }
+
+    public boolean isPauseEvent() {
+        return event == ReplayFormat.EVENT_PAUSE;
+    }
+
+    public boolean isResumeEvent() {
+        return event == ReplayFormat.EVENT_RESUME;
+    }
+}
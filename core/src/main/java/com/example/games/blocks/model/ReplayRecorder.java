@@ -0,0 +1,131 @@
+package com.example.games.blocks.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.example.games.blocks.model.ReplayFormat.EVENT_BITS;
+
+/**
+ * Records the replay of the current game, see {@link ReplayFormat}.
+ *
+ * <p> Events are appended to a byte array that only grows when it is full, so recording
+ * does not allocate per event.
+ */
+class ReplayRecorder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    // Tick of the last recorded event.
+    private int lastTick;
+
+    /**
+     * Starts recording a new game, dropping the previous one.
+     */
+    void start(long seed, int startingLevel, boolean isShowNextFigure, int randomizerCode,
+               int fieldWidth, int fieldHeight, GravityCurve gravityCurve) {
+        size = 0;
+        lastTick = 0;
+        writeInt(ReplayFormat.MAGIC);
+        writeByte(ReplayFormat.VERSION);
+        writeByte(randomizerCode);
+        writeByte(isShowNextFigure ? ReplayFormat.FLAG_SHOW_NEXT_FIGURE : 0);
+        writeByte(startingLevel);
+        writeInt((int) (seed >>> 32));
+        writeInt((int) seed);
+        writeByte(fieldWidth >>> 8);
+        writeByte(fieldWidth);
+        writeByte(fieldHeight >>> 8);
+        writeByte(fieldHeight);
+        writeByte(gravityCurve.frameRate() >>> 8);
+        writeByte(gravityCurve.frameRate());
+        writeByte(gravityCurve.levelCount());
+        for (int level = 0; level < gravityCurve.levelCount(); level++) {
+            writeInt(gravityCurve.cellsPerFrame(level));
+        }
+    }
+
+    /**
+     * Records an event.
+     *
+     * @param tick  number of game ticks run before the event.
+     * @param event Game.CMD_* command or ReplayFormat.EVENT_* code.
+     */
+    void record(int tick, int event) {
+        writeVarLong(((long) (tick - lastTick) << EVENT_BITS) | event);
+        lastTick = tick;
+    }
+
+    /**
+     * Writes the recording so far, for {@link #readState(ByteBuffer)} to continue it.
+     */
+    void writeState(ByteBuffer buffer) {
+        buffer.putInt(lastTick);
+        buffer.putInt(size);
+        buffer.put(bytes, 0, size);
+    }
+
+    /**
+     * Returns the number of bytes {@link #writeState(ByteBuffer)} writes.
+     */
+    int stateSize() {
+        return 8 + size;
+    }
+
+    /**
+     * Continues a recording written by {@link #writeState(ByteBuffer)}.
+     *
+     * @throws IllegalArgumentException if the state is broken.
+     */
+    void readState(ByteBuffer buffer) {
+        int savedLastTick = buffer.getInt();
+        int savedSize = buffer.getInt();
+        if (savedSize < ReplayFormat.HEADER_SIZE || savedSize > buffer.remaining()) {
+            throw new IllegalArgumentException("Broken replay state");
+        }
+        if (savedSize > bytes.length) {
+            bytes = new byte[Integer.highestOneBit(savedSize) * 2];
+        }
+        buffer.get(bytes, 0, savedSize);
+        size = savedSize;
+        lastTick = savedLastTick;
+    }
+
+    /**
+     * Returns the replay recorded so far, ending at a given tick.
+     */
+    byte[] toByteArray(int endTick) {
+        int eventsSize = size;
+        int savedLastTick = lastTick;
+        record(endTick, ReplayFormat.EVENT_END);
+        byte[] replay = Arrays.copyOf(bytes, size);
+        // Recording may go on after this.
+        size = eventsSize;
+        lastTick = savedLastTick;
+        return replay;
+    }
+
+    private void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    private void writeInt(int value) {
+        writeByte(value >>> 24);
+        writeByte(value >>> 16);
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    private void writeByte(int value) {
+        if (size == bytes.length) {
+            bytes = Arrays.copyOf(bytes, size * 2);
+        }
+        bytes[size++] = (byte) value;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.games.blocks.model;
+
+/**
+ * Binary format of game snapshots, see {@link Game#saveState()}.
+ *
+ * <p> A snapshot holds the whole state of a game in progress, so it can go on after a restart
+ * of the app exactly as if it had only been paused. All numbers are big endian:
+ * <pre>
+ *   magic                 4 bytes  "GOBS"
+ *   version               1 byte   {@link #VERSION}
+ *   flags                 1 byte   FLAG_* bits
+ *   randomizer            1 byte   ReplayFormat.RANDOMIZER_* code
+ *   starting level        1 byte
+ *   current level         1 byte
+ *   seed                  8 bytes
+ *   tick count            4 bytes  not counting paused ticks
+ *   score                 4 bytes
+ *   lines                 4 bytes
+ *   next level figures    4 bytes
+ *   figure counts         4 bytes each, total count and then per figure type
+ *   randomizer state      written by FigureRandomizer.writeState()
+ *   upcoming types        1 byte count, then 1 byte per type
+ *   current figure        type and rotation 1 byte each, anchor X and Y 2 bytes each
+ *   next figure type      1 byte
+ *   gravity               4 bytes  accumulated for the current figure, in GravityCurve.CELL units
+ *   gravity curve         see {@link GravityCurve}
+ *   field width, height   2 bytes each
+ *   field rows            4 bytes, number of rows from the top of the stack to the bottom
+ *   field cells           runs of the same cell over those rows without borders, row by
+ *                         row, each an unsigned LEB128 length and 1 byte cell
+ *   replay                recorded so far, to continue it
+ * </pre>
+ * Empty rows and stretches of the stack take a few bytes, so the size of the field grows with
+ * its blocks and not with its area. Without the replay and the gravity curve, a snapshot of a
+ * 10x20 field takes less than 300 bytes.
+ */
+final class SnapshotFormat {
+
+    static final int MAGIC = 0x474F4253;
+    static final int VERSION = 5;
+
+    static final int FLAG_SHOW_NEXT_FIGURE = 1;
+    static final int FLAG_PAUSED = 2;
+    static final int FLAG_AUTOPLAYED = 4;
+
+    // Enough for the fixed size fields, and for the state of any randomizer. The gravity curve
+    // takes GravityCurve.encodedSize() more.
+    static final int MAX_SIZE_WITHOUT_FIELD_AND_REPLAY = 256;
+
+    private SnapshotFormat() {
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.games.blocks.model;
+
+/**
+ * Formats text into reusable char arrays, for labels that change every frame and must not
+ * allocate Strings, e.g. for Canvas.drawText(char[], ...).
+ */
+public final class TextChars {
+
+    private TextChars() {
+    }
+
+    /**
+     * Writes a String at an offset.
+     *
+     * @return the offset after the written chars.
+     */
+    public static int append(char[] buffer, int offset, String text) {
+        text.getChars(0, text.length(), buffer, offset);
+        return offset + text.length();
+    }
+
+    /**
+     * Writes a number in decimal at an offset.
+     *
+     * @return the offset after the written chars.
+     */
+    public static int append(char[] buffer, int offset, long value) {
+        if (value < 0) {
+            buffer[offset++] = '-';
+            if (value == Long.MIN_VALUE) {
+                return append(buffer, offset, "9223372036854775808");
+            }
+            value = -value;
+        }
+        int end = offset + digitCount(value);
+        int position = end;
+        do {
+            buffer[--position] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+
+    /**
+     * Writes a number in decimal at an offset, with a separator between groups of three
+     * digits, like String.format("%,d") does.
+     *
+     * @return the offset after the written chars.
+     */
+    public static int appendGrouped(char[] buffer, int offset, long value, char separator) {
+        if (value < 0) {
+            buffer[offset++] = '-';
+            if (value == Long.MIN_VALUE) {
+                return append(buffer, offset, "9" + separator + "223" + separator + "372"
+                        + separator + "036" + separator + "854" + separator + "775"
+                        + separator + "808");
+            }
+            value = -value;
+        }
+        int digits = digitCount(value);
+        int end = offset + digits + (digits - 1) / 3;
+        int position = end;
+        int groupDigits = 0;
+        do {
+            if (groupDigits == 3) {
+                buffer[--position] = separator;
+                groupDigits = 0;
+            }
+            buffer[--position] = (char) ('0' + value % 10);
+            value /= 10;
+            groupDigits++;
+        } while (value != 0);
+        return end;
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+}
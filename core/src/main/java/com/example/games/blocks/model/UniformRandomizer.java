@@ -0,0 +1,31 @@
+package com.example.games.blocks.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Chooses every figure type independently and with equal probability.
+ */
+public class UniformRandomizer implements FigureRandomizer {
+
+    private final FastRandom random = new FastRandom(0);
+
+    @Override
+    public void reset(long seed) {
+        random.setSeed(seed);
+    }
+
+    @Override
+    public int nextFigureType() {
+        return random.nextInt(Figure.FT_MAX) + 1;
+    }
+
+    @Override
+    public void writeState(ByteBuffer buffer) {
+        buffer.putLong(random.state());
+    }
+
+    @Override
+    public void readState(ByteBuffer buffer) {
+        random.setSeed(buffer.getLong());
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.games.blocks.model;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Counts the bytes allocated by games on the virtual clock once other games have been played,
+ * which has to be none, with autoplay and with the hint at the default lookahead.
+ *
+ * <p> The games run on the only worker of their own pool, like the simulator runs them, so the
+ * searches run on the thread that is counted and never wait for another one.
+ */
+public class AllocationTest {
+
+    // The games counted have other seeds than the games that warm up, so they reach boards and
+    // searches of their own. The warm up is long enough for the search to reach its largest
+    // sizes, and for the compiled code to settle.
+    private static final int WARM_UP_GAME_COUNT = 60;
+    private static final int GAME_COUNT = 10;
+    private static final int MAX_TICKS = 3000;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void autoplayAllocatesNothing() throws Exception {
+        assertEquals(0, allocatedBytes(true));
+    }
+
+    @Test
+    public void hintAllocatesNothing() throws Exception {
+        assertEquals(0, allocatedBytes(false));
+    }
+
+    /**
+     * Plays games to warm up, and returns the bytes allocated by the games played after them.
+     */
+    private static long allocatedBytes(boolean isAutoPlay)
+            throws ExecutionException, InterruptedException {
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            return pool.submit(() -> {
+                AutoPlayer autoPlayer = new AutoPlayer(pool);
+                autoPlayer.setTimeBudgetMillis(0);
+                Game game = new Game();
+                game.setRealTime(false);
+                game.setAutoPlayer(autoPlayer);
+                game.setAutoPlay(isAutoPlay);
+                game.setShowHint(!isAutoPlay);
+                Random random = new Random();
+                playGames(game, random, 0, WARM_UP_GAME_COUNT);
+
+                long threadId = Thread.currentThread().getId();
+                long before = threads.getThreadAllocatedBytes(threadId);
+                playGames(game, random, WARM_UP_GAME_COUNT, GAME_COUNT);
+                return threads.getThreadAllocatedBytes(threadId) - before;
+            }).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Plays games of consecutive seeds, each to its end or the tick limit.
+     */
+    private static void playGames(Game game, Random random, long firstSeed, int count) {
+        for (long seed = firstSeed; seed < firstSeed + count; seed++) {
+            random.setSeed(seed);
+            game.setSeed(seed);
+            game.newGame();
+            for (int tick = 0; tick < MAX_TICKS && game.isInGame(); tick++) {
+                ReplayTest.playRandomCommand(game, random);
+                game.advanceTick();
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.games.blocks.model;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks Board against a plain grid of cells, over random drops, row removals, copies and
+ * snapshots of the cells.
+ */
+public class BoardTest {
+
+    // Sizes with row masks of one and of two longs, and a field of a single column.
+    private static final int[][] SIZES = {{10, 20}, {4, 8}, {1, 6}, {62, 30}, {63, 30}, {70, 40}};
+
+    private static final int DROP_COUNT = 3000;
+
+    @Test
+    public void matchesGrid() {
+        Random random = new Random(1);
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            Board board = new Board(width, height);
+            // Copied into every so often, over whatever it had before.
+            Board copy = new Board(width, height);
+            Grid grid = new Grid(width, height);
+            for (int drop = 0; drop < DROP_COUNT; drop++) {
+                int type = 1 + random.nextInt(Figure.FT_MAX);
+                int rotation = random.nextInt(FigureShapes.ORIENTATION_COUNT[type]);
+                int x = random.nextInt(width + 4) - 2;
+                int y = random.nextInt(3);
+                boolean fits = grid.fits(type, rotation, x, y);
+                assertEquals(fits, FigureShapes.fits(board, type, rotation, x, y));
+                if (!fits) {
+                    if (random.nextInt(20) == 0) {
+                        // Blocked at the top, start over.
+                        board.clear();
+                        grid.clear();
+                    }
+                    continue;
+                }
+                int distance = grid.dropDistance(type, rotation, x, y);
+                assertEquals(distance, FigureShapes.dropDistance(board, type, rotation, x, y));
+                FigureShapes.lock(board, type, rotation, x, y + distance);
+                grid.lock(type, rotation, x, y + distance);
+                assertEquals(grid.removeFullRows(), board.removeFullRows());
+                assertSameCells(grid, board);
+                if (drop % 50 == 0) {
+                    copy.copyFrom(board);
+                    assertSameCells(grid, copy);
+                } else if (drop % 50 == 25) {
+                    ByteBuffer buffer = ByteBuffer.allocate(board.cellsSize());
+                    board.writeCells(buffer);
+                    buffer.flip();
+                    copy.readCells(buffer);
+                    assertSameCells(grid, copy);
+                }
+            }
+        }
+    }
+
+    private static void assertSameCells(Grid grid, Board board) {
+        int blockCount = 0;
+        for (int y = 1; y <= grid.height; y++) {
+            for (int x = 1; x <= grid.width; x++) {
+                assertEquals(grid.cells[y][x], board.cell(x, y));
+                assertEquals(grid.cells[y][x] == Game.CELL_IS_EMPTY, board.isEmpty(x, y));
+                if (grid.cells[y][x] != Game.CELL_IS_EMPTY) {
+                    blockCount++;
+                }
+            }
+        }
+        assertEquals(blockCount, board.blockCount());
+        int stackTop = grid.height + 1;
+        for (int x = 1; x <= grid.width; x++) {
+            assertEquals(grid.columnTop(x), board.columnTop(x));
+            stackTop = Math.min(stackTop, grid.columnTop(x));
+        }
+        assertEquals(grid.height + 1 - stackTop, board.stackHeight());
+    }
+
+    /**
+     * Cells of a field in a plain array, with figures placed part by part.
+     */
+    private static final class Grid {
+        final int width;
+        final int height;
+        // Indexed by Y and then X, from 1.
+        final int[][] cells;
+
+        Grid(int width, int height) {
+            this.width = width;
+            this.height = height;
+            cells = new int[height + 1][width + 1];
+        }
+
+        void clear() {
+            for (int[] row : cells) {
+                Arrays.fill(row, Game.CELL_IS_EMPTY);
+            }
+        }
+
+        boolean fits(int type, int rotation, int x, int y) {
+            for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+                int partX = x + FigureShapes.DX[type][rotation][i];
+                int partY = y + FigureShapes.DY[type][rotation][i];
+                if (partX < 1 || partX > width || partY < 1 || partY > height
+                        || cells[partY][partX] != Game.CELL_IS_EMPTY) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int dropDistance(int type, int rotation, int x, int y) {
+            int distance = 0;
+            while (fits(type, rotation, x, y + distance + 1)) {
+                distance++;
+            }
+            return distance;
+        }
+
+        void lock(int type, int rotation, int x, int y) {
+            for (int i = 0; i < Figure.FIGURE_SIZE; i++) {
+                cells[y + FigureShapes.DY[type][rotation][i]]
+                        [x + FigureShapes.DX[type][rotation][i]] = type;
+            }
+        }
+
+        int removeFullRows() {
+            int removedCount = 0;
+            for (int y = height; y >= 1; y--) {
+                boolean isFull = true;
+                for (int x = 1; x <= width && isFull; x++) {
+                    isFull = cells[y][x] != Game.CELL_IS_EMPTY;
+                }
+                if (isFull) {
+                    // Moves the rows above down by one, and checks this row again.
+                    System.arraycopy(cells, 1, cells, 2, y - 1);
+                    cells[1] = new int[width + 1];
+                    removedCount++;
+                    y++;
+                }
+            }
+            return removedCount;
+        }
+
+        int columnTop(int x) {
+            for (int y = 1; y <= height; y++) {
+                if (cells[y][x] != Game.CELL_IS_EMPTY) {
+                    return y;
+                }
+            }
+            return height + 1;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.games.blocks.model;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Opens histories whose index or log was cut short or lost, e.g. by a crash between the writes,
+ * which have to come back with the totals and top scores of the games in the log.
+ */
+public class GameHistoryTest {
+
+    private static final int GAME_COUNT = 300;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(1);
+    private final List<GameRecord> games = new ArrayList<>();
+    private File directory;
+
+    private GameHistory newHistory() throws IOException {
+        directory = folder.newFolder();
+        GameHistory history = GameHistory.open(directory);
+        for (int i = 0; i < GAME_COUNT; i++) {
+            GameRecord record = newRecord(i);
+            games.add(record);
+            history.add(record);
+        }
+        assertSameGames(history);
+        return history;
+    }
+
+    @Test
+    public void reopens() throws IOException {
+        newHistory();
+        assertSameGames(GameHistory.open(directory));
+    }
+
+    @Test
+    public void rebuildsMissingIndex() throws IOException {
+        newHistory();
+        assertTrue(new File(directory, GameHistory.INDEX_FILE_NAME).delete());
+        assertSameGames(GameHistory.open(directory));
+    }
+
+    @Test
+    public void rebuildsTruncatedIndex() throws IOException {
+        newHistory();
+        setLength(GameHistory.INDEX_FILE_NAME, 30);
+        assertSameGames(GameHistory.open(directory));
+    }
+
+    @Test
+    public void rebuildsBrokenIndex() throws IOException {
+        newHistory();
+        try (RandomAccessFile file =
+                     new RandomAccessFile(new File(directory, GameHistory.INDEX_FILE_NAME), "rw")) {
+            file.seek(40);
+            file.write(file.read() ^ 0x55);
+        }
+        assertSameGames(GameHistory.open(directory));
+    }
+
+    @Test
+    public void dropsPartialRecordOfLog() throws IOException {
+        newHistory();
+        File log = new File(directory, GameHistory.LOG_FILE_NAME);
+        setLength(GameHistory.LOG_FILE_NAME, log.length() + HistoryFormat.RECORD_SIZE / 2);
+        GameHistory history = GameHistory.open(directory);
+        assertSameGames(history);
+
+        GameRecord record = newRecord(GAME_COUNT);
+        games.add(record);
+        history.add(record);
+        assertSameGames(GameHistory.open(directory));
+        long recordsSize = (long) games.size() * HistoryFormat.RECORD_SIZE;
+        assertEquals(HistoryFormat.LOG_HEADER_SIZE + recordsSize, log.length());
+    }
+
+    @Test
+    public void rebuildsIndexOfTruncatedLog() throws IOException {
+        newHistory();
+        int keptCount = GAME_COUNT / 3;
+        setLength(GameHistory.LOG_FILE_NAME,
+                HistoryFormat.LOG_HEADER_SIZE + (long) keptCount * HistoryFormat.RECORD_SIZE);
+        games.subList(keptCount, games.size()).clear();
+        assertSameGames(GameHistory.open(directory));
+    }
+
+    private void setLength(String fileName, long length) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, fileName), "rw")) {
+            file.setLength(length);
+        }
+    }
+
+    private GameRecord newRecord(int i) {
+        int[] figureCounts = new int[Figure.FT_MAX + 1];
+        for (int type = 1; type <= Figure.FT_MAX; type++) {
+            figureCounts[type] = random.nextInt(50);
+            figureCounts[0] += figureCounts[type];
+        }
+        int flags = random.nextInt(4);
+        return new GameRecord(1000L + i, random.nextLong(), random.nextInt(10_000),
+                random.nextInt(100_000), random.nextInt(300), figureCounts,
+                random.nextInt(HistoryFormat.LEVEL_COUNT + 2), random.nextInt(11), 1, flags,
+                Game.DEFAULT_FIELD_WIDTH, Game.DEFAULT_FIELD_HEIGHT);
+    }
+
+    /**
+     * Checks the totals and the top scores of a history against all games added so far.
+     */
+    private void assertSameGames(GameHistory history) {
+        long totalScore = 0;
+        long totalLines = 0;
+        long totalTicks = 0;
+        long totalFigures = 0;
+        for (GameRecord game : games) {
+            totalScore += game.score();
+            totalLines += game.lines();
+            totalTicks += game.tickCount();
+            totalFigures += game.figuresCount();
+        }
+        assertEquals(games.size(), history.gameCount());
+        assertEquals(totalScore, history.totalScore());
+        assertEquals(totalLines, history.totalLines());
+        assertEquals(totalTicks, history.totalTicks());
+        assertEquals(totalFigures, history.totalFigures());
+
+        List<GameRecord> best = new ArrayList<>();
+        for (GameRecord game : games) {
+            if (!game.isAutoPlayed()) {
+                best.add(game);
+            }
+        }
+        // Stable, so of equal scores the earlier game is first.
+        best.sort((a, b) -> Integer.compare(b.score(), a.score()));
+        assertSameTop(best, history.topScores());
+        for (int level = 0; level < HistoryFormat.LEVEL_COUNT; level++) {
+            List<GameRecord> levelBest = new ArrayList<>();
+            for (GameRecord game : best) {
+                if (game.startingLevel() == level) {
+                    levelBest.add(game);
+                }
+            }
+            assertSameTop(levelBest, history.topScores(level));
+        }
+    }
+
+    private static void assertSameTop(List<GameRecord> best, List<GameRecord> top) {
+        assertEquals(Math.min(GameHistory.TOP_SIZE, best.size()), top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(best.get(i).score(), top.get(i).score());
+            assertEquals(best.get(i).endTimeMillis(), top.get(i).endTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.games.blocks.model;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Plays games back from their replays, which has to end in the same state and record the same
+ * replay.
+ */
+public class ReplayTest {
+
+    private static final int GAME_COUNT = 12;
+    private static final int MAX_TICKS = 20_000;
+    // Autoplay lasts long, and searches every figure.
+    private static final int MAX_AUTOPLAY_TICKS = 5000;
+
+    @Test
+    public void playerGamesPlayBack() {
+        Random random = new Random(1);
+        for (int i = 0; i < GAME_COUNT; i++) {
+            Game game = newGame(i);
+            game.newGame();
+            for (int tick = 0; tick < MAX_TICKS && game.isInGame(); tick++) {
+                playRandomCommand(game, random);
+                game.advanceTick();
+            }
+            assertPlaysBack(game);
+        }
+    }
+
+    @Test
+    public void autoplayedGamesPlayBack() {
+        for (int i = 0; i < GAME_COUNT; i++) {
+            Game game = newGame(i);
+            AutoPlayer autoPlayer = new AutoPlayer();
+            autoPlayer.setTimeBudgetMillis(0);
+            game.setAutoPlayer(autoPlayer);
+            game.setAutoPlay(true);
+            game.newGame();
+            for (int tick = 0; tick < MAX_AUTOPLAY_TICKS && game.isInGame(); tick++) {
+                game.advanceTick();
+            }
+            assertPlaysBack(game);
+        }
+    }
+
+    @Test
+    public void pausedGamesPlayBack() {
+        Random random = new Random(2);
+        for (int i = 0; i < GAME_COUNT; i++) {
+            Game game = newGame(i);
+            game.newGame();
+            for (int tick = 0; tick < MAX_TICKS && game.isInGame(); tick++) {
+                if (random.nextInt(100) == 0) {
+                    // No ticks pass while paused, and the commands are ignored.
+                    game.togglePaused();
+                    int tickCount = game.getTickCount();
+                    for (int pausedTick = random.nextInt(200); pausedTick > 0; pausedTick--) {
+                        playRandomCommand(game, random);
+                        game.advanceTick();
+                    }
+                    assertEquals(tickCount, game.getTickCount());
+                    game.togglePaused();
+                }
+                playRandomCommand(game, random);
+                game.advanceTick();
+            }
+            assertPlaysBack(game);
+        }
+    }
+
+    /**
+     * Returns a game on the virtual clock, with settings that differ by its number.
+     */
+    static Game newGame(int i) {
+        Game game = new Game();
+        game.setRealTime(false);
+        game.setSeed(i);
+        game.setStartingLevel(1 + i % 9);
+        game.setShowNextFigure(i % 2 == 0);
+        game.setFigureRandomizer(i % 3 == 0 ? new UniformRandomizer()
+                : i % 3 == 1 ? new BagRandomizer()
+                : new HistoryRandomizer());
+        game.setGravityCurve(i % 4 == 3 ? GravityCurve.STANDARD : GravityCurve.CLASSIC);
+        if (i % 5 == 4) {
+            game.setFieldSize(20, 30);
+        }
+        return game;
+    }
+
+    /**
+     * Moves, rotates or drops the current figure now and then, like a player would.
+     */
+    static void playRandomCommand(Game game, Random random) {
+        switch (random.nextInt(24)) {
+            case 0:
+            case 1:
+            case 2:
+                game.left();
+                break;
+            case 3:
+            case 4:
+            case 5:
+                game.right();
+                break;
+            case 6:
+            case 7:
+                game.rotate();
+                break;
+            case 8:
+                game.drop();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void assertPlaysBack(Game game) {
+        byte[] replay = game.getReplay();
+        Game replayed = new Game();
+        ReplayPlayer.play(new ReplayReader().wrap(replay), replayed);
+        assertEquals(game.getScore(), replayed.getScore());
+        assertEquals(game.getLinesCount(), replayed.getLinesCount());
+        assertEquals(game.getFiguresCount(), replayed.getFiguresCount());
+        assertEquals(game.getLevel(), replayed.getLevel());
+        assertEquals(game.getTickCount(), replayed.getTickCount());
+        assertEquals(game.isInGame(), replayed.isInGame());
+        assertArrayEquals(replay, replayed.getReplay());
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.games.blocks.model;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Restores games from snapshots, which have to go on exactly as the saved games do.
+ */
+public class SnapshotTest {
+
+    private static final int GAME_COUNT = 12;
+    private static final int TICKS_AFTER_RESTORE = 3000;
+
+    @Test
+    public void restoredGamesGoOnTheSame() {
+        for (int i = 0; i < GAME_COUNT; i++) {
+            Game game = ReplayTest.newGame(i);
+            game.newGame();
+            Random random = new Random(i);
+            for (int tick = 0; tick < 100 + i * 10 && game.isInGame(); tick++) {
+                ReplayTest.playRandomCommand(game, random);
+                game.advanceTick();
+            }
+            // Saved when the app is paused.
+            game.pause();
+            byte[] snapshot = game.saveState();
+            assertNotNull(snapshot);
+
+            Game restored = new Game();
+            restored.setRealTime(false);
+            restored.restoreState(snapshot);
+            assertArrayEquals(snapshot, restored.saveState());
+
+            game.togglePaused();
+            restored.togglePaused();
+            // Both get the same commands from then on.
+            long seed = random.nextLong();
+            random = new Random(seed);
+            Random restoredRandom = new Random(seed);
+            for (int tick = 0; tick < TICKS_AFTER_RESTORE && game.isInGame(); tick++) {
+                ReplayTest.playRandomCommand(game, random);
+                ReplayTest.playRandomCommand(restored, restoredRandom);
+                game.advanceTick();
+                restored.advanceTick();
+            }
+            assertEquals(game.getScore(), restored.getScore());
+            assertEquals(game.getLinesCount(), restored.getLinesCount());
+            assertEquals(game.getFiguresCount(), restored.getFiguresCount());
+            assertEquals(game.getLevel(), restored.getLevel());
+            assertEquals(game.getTickCount(), restored.getTickCount());
+            assertEquals(game.isInGame(), restored.isInGame());
+            assertArrayEquals(game.getReplay(), restored.getReplay());
+        }
+    }
+
+    @Test
+    public void brokenSnapshotsAreRefused() {
+        Game game = ReplayTest.newGame(1);
+        game.newGame();
+        for (int tick = 0; tick < 500; tick++) {
+            game.advanceTick();
+        }
+        byte[] snapshot = game.saveState();
+        assertNotNull(snapshot);
+
+        Game restored = new Game();
+        restored.setRealTime(false);
+        for (int length = 0; length < snapshot.length; length++) {
+            assertRefused(restored, Arrays.copyOf(snapshot, length));
+        }
+        byte[] otherVersion = snapshot.clone();
+        otherVersion[4] = (byte) (SnapshotFormat.VERSION - 1);
+        assertRefused(restored, otherVersion);
+    }
+
+    @Test
+    public void levelsOutsideTheGravityCurveAreRefused() {
+        Game game = ReplayTest.newGame(1);
+        game.newGame();
+        game.advanceTick();
+        byte[] snapshot = game.saveState();
+        assertNotNull(snapshot);
+
+        Game restored = new Game();
+        restored.setRealTime(false);
+        int[] brokenLevels = {-1, -128, GravityCurve.CLASSIC.maxLevel() + 1, 127};
+        // Starting level and current level, after the magic, version, flags and randomizer.
+        for (int offset = 7; offset <= 8; offset++) {
+            for (int level : brokenLevels) {
+                byte[] broken = snapshot.clone();
+                broken[offset] = (byte) level;
+                assertRefused(restored, broken);
+            }
+        }
+        restored.restoreState(snapshot);
+        assertEquals(game.getLevel(), restored.getLevel());
+    }
+
+    @Test
+    public void gamesOfUnknownRandomizersAreNotSaved() {
+        Game game = new Game();
+        game.setRealTime(false);
+        game.setFigureRandomizer(new FigureRandomizer() {
+            @Override
+            public void reset(long seed) {
+            }
+
+            @Override
+            public int nextFigureType() {
+                return Figure.FT_MAX;
+            }
+
+            @Override
+            public void writeState(ByteBuffer buffer) {
+            }
+
+            @Override
+            public void readState(ByteBuffer buffer) {
+            }
+        });
+        game.newGame();
+        game.advanceTick();
+        assertNull(game.saveState());
+    }
+
+    private static void assertRefused(Game game, byte[] snapshot) {
+        try {
+            game.restoreState(snapshot);
+            fail("Restored a broken snapshot of " + snapshot.length + " bytes");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
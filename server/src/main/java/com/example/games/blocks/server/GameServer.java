@@ -0,0 +1,186 @@
+package com.example.games.blocks.server;
+
+import com.example.games.blocks.model.GravityCurve;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays games for remote players, one {@link Session} per TCP connection, with the
+ * {@link Protocol}.
+ *
+ * <p> Every session runs on virtual threads, so the number of sessions is bounded by the
+ * CPU time their ticks take, not by the number of threads. {@link ServerStats} reports how
+ * many sessions each busy core holds and how late the ticks get.
+ *
+ * <p> Sessions tick at the frame rate of their gravity curve, and send a state every tick. The
+ * server runs the same gravity speeds as the app at a lower frame rate by default, for fewer
+ * messages.
+ *
+ * <p> Options, all optional: --port=N (7000 by default) --report-seconds=N
+ * --gravity=classic|standard (classic by default) --frame-rate=N (30 by default)
+ */
+public final class GameServer {
+
+    private static final int DEFAULT_PORT = 7000;
+    private static final int DEFAULT_REPORT_SECONDS = 10;
+    private static final int BACKLOG = 1024;
+    private static final int DEFAULT_FRAME_RATE = 30;
+
+    private final ServerStats stats = new ServerStats();
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+    private volatile GravityCurve gravityCurve =
+            GravityCurve.CLASSIC.atFrameRate(DEFAULT_FRAME_RATE);
+
+    /**
+     * Sets the gravity curve of the games of the sessions opened from now on.
+     */
+    public void setGravityCurve(GravityCurve gravityCurve) {
+        if (gravityCurve == null) {
+            throw new NullPointerException("gravityCurve");
+        }
+        this.gravityCurve = gravityCurve;
+    }
+
+    /**
+     * Starts accepting connections.
+     *
+     * @param port 0 for any free port.
+     * @return the port the server listens on.
+     */
+    public synchronized int start(int port) throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("The server is already started");
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(port), BACKLOG);
+        ServerSocket acceptingSocket = serverSocket;
+        startThread("server-acceptor", () -> accept(acceptingSocket));
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and closes all sessions.
+     */
+    public synchronized void stop() {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Already closed.
+        }
+        serverSocket = null;
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+    ServerStats stats() {
+        return stats;
+    }
+
+    public void report(PrintStream out) {
+        stats.report(out);
+    }
+
+    private void accept(ServerSocket acceptingSocket) {
+        while (!acceptingSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = acceptingSocket.accept();
+            } catch (IOException e) {
+                // The server is stopped.
+                return;
+            }
+            try {
+                Session session = new Session(socket, stats, gravityCurve);
+                sessions.add(session);
+                startThread("session", () -> {
+                    try {
+                        session.run();
+                    } finally {
+                        sessions.remove(session);
+                    }
+                });
+            } catch (IOException e) {
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    /**
+     * Starts a virtual thread. All threads of the server and of the load generator are
+     * started here.
+     */
+    static Thread startThread(String name, Runnable task) {
+        return Thread.ofVirtual().name(name).start(task);
+    }
+
+    static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed.
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int port = DEFAULT_PORT;
+        int reportSeconds = DEFAULT_REPORT_SECONDS;
+        GravityCurve gravityCurve = GravityCurve.CLASSIC;
+        int frameRate = DEFAULT_FRAME_RATE;
+        try {
+            for (String arg : args) {
+                String name = arg;
+                String value = "";
+                int equals = arg.indexOf('=');
+                if (equals >= 0) {
+                    name = arg.substring(0, equals);
+                    value = arg.substring(equals + 1);
+                }
+                switch (name) {
+                    case "--port":
+                        port = Integer.parseInt(value);
+                        break;
+                    case "--report-seconds":
+                        reportSeconds = Integer.parseInt(value);
+                        break;
+                    case "--gravity":
+                        gravityCurve = GravityCurve.forName(value);
+                        break;
+                    case "--frame-rate":
+                        frameRate = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            gravityCurve = gravityCurve.atFrameRate(frameRate);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+
+        GameServer server = new GameServer();
+        server.setGravityCurve(gravityCurve);
+        try {
+            System.out.printf("Listening on port %d%n", server.start(port));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        while (true) {
+            TimeUnit.SECONDS.sleep(reportSeconds);
+            server.report(System.out);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.games.blocks.server;
+
+import com.example.games.blocks.model.Game;
+import com.example.games.blocks.model.LatencyHistogram;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plays many sessions against a {@link GameServer} at once, to find how many sessions a
+ * server holds before its ticks get late.
+ *
+ * <p> Each client runs on its own virtual thread: it starts a game, reads every state and
+ * now and then sends a random command, measuring the time until the next state, and starts
+ * a new game when one is over. Without --port, the server runs in the same process on a
+ * free port, and its report is printed at the end as well.
+ *
+ * <p> Options, all optional: --sessions=N --seconds=N --level=N --width=N --height=N
+ * --host=NAME --port=N
+ */
+public final class LoadGenerator {
+
+    // One state out of this many is answered with a random command.
+    private static final int COMMAND_EVERY_STATES = 4;
+
+    private int sessionsCount = 1_000;
+    private int seconds = 10;
+    private int startingLevel = Protocol.MAX_LEVEL;
+    private int fieldWidth = Game.DEFAULT_FIELD_WIDTH;
+    private int fieldHeight = Game.DEFAULT_FIELD_HEIGHT;
+    private String host = "localhost";
+    private int port;
+
+    private final LatencyHistogram roundTrip = new LatencyHistogram("round trip");
+    private final LongAdder statesCount = new LongAdder();
+    private final LongAdder gamesCount = new LongAdder();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private volatile boolean isStopped;
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadGenerator generator = new LoadGenerator();
+        try {
+            generator.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+        try {
+            generator.run();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void parse(String[] args) {
+        for (String arg : args) {
+            String name = arg;
+            String value = "";
+            int equals = arg.indexOf('=');
+            if (equals >= 0) {
+                name = arg.substring(0, equals);
+                value = arg.substring(equals + 1);
+            }
+            switch (name) {
+                case "--sessions":
+                    sessionsCount = Integer.parseInt(value);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(value);
+                    break;
+                case "--level":
+                    startingLevel = Integer.parseInt(value);
+                    break;
+                case "--width":
+                    fieldWidth = Integer.parseInt(value);
+                    break;
+                case "--height":
+                    fieldHeight = Integer.parseInt(value);
+                    break;
+                case "--host":
+                    host = value;
+                    break;
+                case "--port":
+                    port = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (sessionsCount < 1 || seconds < 1) {
+            throw new IllegalArgumentException("Need at least one session and one second");
+        }
+        Game.checkFieldSize(fieldWidth, fieldHeight);
+    }
+
+    private void run() throws IOException, InterruptedException {
+        GameServer server = null;
+        if (port == 0) {
+            server = new GameServer();
+            port = server.start(0);
+        }
+        System.out.printf("Playing %,d sessions for %d s: level %d, field %dx%d, server %s:%d%n",
+                sessionsCount, seconds, startingLevel, fieldWidth, fieldHeight, host, port);
+
+        List<Thread> clients = new ArrayList<>(sessionsCount);
+        for (int i = 0; i < sessionsCount; i++) {
+            long seed = i + 1;
+            clients.add(GameServer.startThread("client", () -> play(seed)));
+        }
+        long startNanos = System.nanoTime();
+        TimeUnit.SECONDS.sleep(seconds);
+        // Report on the server while all sessions are still open.
+        if (server != null) {
+            server.report(System.out);
+        }
+        isStopped = true;
+        for (Thread client : clients) {
+            client.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        if (server != null) {
+            server.stop();
+        }
+        System.out.printf("Clients:  %,.0f states/s, %,d games, %d failed sessions%n",
+                statesCount.sum() / elapsedSeconds, gamesCount.sum(), failedCount.get());
+        ServerStats.printLatency(System.out, roundTrip);
+    }
+
+    /**
+     * Plays one session until the load test is over.
+     */
+    private void play(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            // Room for the longest fields a client does not look at.
+            byte[] skipped = new byte[Math.max(fieldWidth, 4 * 4 + 1)];
+            sendStart(output, seed);
+            long commandNanos = 0;
+            while (!isStopped) {
+                int message = input.readUnsignedByte();
+                if (message == Protocol.MSG_GAME_OVER) {
+                    input.readFully(skipped, 0, 4 * 4);
+                    gamesCount.increment();
+                    commandNanos = 0;
+                    sendStart(output, random.nextLong());
+                    continue;
+                }
+                if (message != Protocol.MSG_STATE) {
+                    throw new IOException("Unexpected message " + message);
+                }
+                readState(input, skipped);
+                statesCount.increment();
+                if (commandNanos != 0) {
+                    roundTrip.record(System.nanoTime() - commandNanos);
+                    commandNanos = 0;
+                } else if (random.nextInt(COMMAND_EVERY_STATES) == 0) {
+                    output.writeByte(Protocol.MSG_COMMAND);
+                    output.writeByte(Game.CMD_LEFT + random.nextInt(Game.CMD_DROP));
+                    output.flush();
+                    commandNanos = System.nanoTime();
+                }
+            }
+            output.writeByte(Protocol.MSG_QUIT);
+            output.flush();
+        } catch (IOException e) {
+            failedCount.incrementAndGet();
+        }
+    }
+
+    private void sendStart(DataOutputStream output, long seed) throws IOException {
+        output.writeByte(Protocol.MSG_START);
+        output.writeLong(seed);
+        output.writeByte(startingLevel);
+        output.writeShort(fieldWidth);
+        output.writeShort(fieldHeight);
+        output.flush();
+    }
+
+    /**
+     * Reads the fields of a state, checking that they are well formed.
+     */
+    private void readState(DataInputStream input, byte[] skipped) throws IOException {
+        // Tick, score, lines, figures and level.
+        input.readFully(skipped, 0, 4 * 4 + 1);
+        if (input.readUnsignedByte() != 0) {
+            input.readFully(skipped, 0, 4 * 4);
+        }
+        int changedRows = input.readUnsignedShort();
+        for (int i = 0; i < changedRows; i++) {
+            int y = input.readUnsignedShort();
+            if (y < 1 || y > fieldHeight) {
+                throw new IOException("Row " + y + " is out of the field");
+            }
+            input.readFully(skipped, 0, fieldWidth);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.games.blocks.server;
+
+/**
+ * Binary protocol between game clients and the {@link GameServer}, over one TCP connection
+ * per session.
+ *
+ * <p> Every message is a one byte type followed by its fields, big-endian, with no padding:
+ * <pre>
+ * client to server:
+ *   MSG_START     seed (8), starting level (1), field width (2), field height (2)
+ *   MSG_COMMAND   Game.CMD_LEFT, CMD_ROTATE, CMD_RIGHT or CMD_DROP (1)
+ *   MSG_QUIT
+ * server to client:
+ *   MSG_STATE     tick (4), score (4), lines (4), figures (4), level (1),
+ *                 current figure type (1), 0 if there is none,
+ *                 then if there is one, the X and Y of its 4 parts (2 + 2 each),
+ *                 number of changed rows (2), then per row its Y (2) and figure type or
+ *                 Game.CELL_IS_EMPTY per cell (width)
+ *   MSG_GAME_OVER tick (4), score (4), lines (4), figures (4)
+ * </pre>
+ * A session starts with MSG_START, which can also start a new game at any time. The server
+ * sends a state after every tick and after every command, with the rows of settled blocks
+ * that changed since the previous state, all rows after MSG_START.
+ */
+final class Protocol {
+
+    static final int MSG_START = 1;
+    static final int MSG_COMMAND = 2;
+    static final int MSG_QUIT = 3;
+
+    static final int MSG_STATE = 16;
+    static final int MSG_GAME_OVER = 17;
+
+    // Highest starting level a client can ask for.
+    static final int MAX_LEVEL = 9;
+
+    // Largest field width or height a client can ask for, to bound the memory of a session.
+    static final int MAX_FIELD_SIZE = 100;
+
+    private Protocol() {
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.games.blocks.server;
+
+import com.example.games.blocks.model.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load of a {@link GameServer}: open sessions, ticks, and how late and how long the ticks are.
+ *
+ * <p> Tick jitter is how much later than its deadline a tick starts. With enough cores for
+ * the load it stays around the timer resolution, and it grows as soon as the sessions need
+ * more CPU than there is.
+ */
+final class ServerStats {
+
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final LongAdder tickCount = new LongAdder();
+    private final LongAdder messageCount = new LongAdder();
+    private final LatencyHistogram tickJitter = new LatencyHistogram("tick jitter");
+    private final LatencyHistogram tickWork = new LatencyHistogram("tick work");
+
+    // Totals at the previous report, to report rates per interval.
+    private long reportedTickCount;
+    private long reportedMessageCount;
+    private long reportedNanos = System.nanoTime();
+
+    void sessionOpened() {
+        sessionCount.incrementAndGet();
+    }
+
+    void sessionClosed() {
+        sessionCount.decrementAndGet();
+    }
+
+    /**
+     * Counts one tick.
+     *
+     * @param lateNanos time from the tick deadline to the start of the tick.
+     * @param workNanos time of the tick, sending the state included.
+     */
+    void tick(long lateNanos, long workNanos) {
+        tickCount.increment();
+        tickJitter.record(lateNanos);
+        tickWork.record(workNanos);
+    }
+
+    void messageSent() {
+        messageCount.increment();
+    }
+
+    int sessionCount() {
+        return sessionCount.get();
+    }
+
+    LatencyHistogram tickJitter() {
+        return tickJitter;
+    }
+
+    LatencyHistogram tickWork() {
+        return tickWork;
+    }
+
+    /**
+     * Prints the load since the previous report, and the tick latencies since the start.
+     */
+    synchronized void report(PrintStream out) {
+        long now = System.nanoTime();
+        double seconds = (now - reportedNanos) / 1e9;
+        long ticks = tickCount.sum();
+        long messages = messageCount.sum();
+        int sessions = sessionCount.get();
+        int cores = Runtime.getRuntime().availableProcessors();
+        double busyCores = processCpuLoad() * cores;
+
+        out.printf("Sessions: %,d on %d cores, %,.0f per core, %,.0f per busy core (%.1f busy)%n",
+                sessions, cores, (double) sessions / cores,
+                busyCores > 0 ? sessions / busyCores : 0, busyCores);
+        out.printf("Ticks:    %,.0f/s, messages %,.0f/s%n",
+                (ticks - reportedTickCount) / seconds, (messages - reportedMessageCount) / seconds);
+        printLatency(out, tickJitter);
+        printLatency(out, tickWork);
+
+        reportedTickCount = ticks;
+        reportedMessageCount = messages;
+        reportedNanos = now;
+    }
+
+    static void printLatency(PrintStream out, LatencyHistogram histogram) {
+        out.printf("%-12s n %,d p50 %.0f us, p99 %.0f us, p99.9 %.0f us, max %.0f us%n",
+                histogram.name(), histogram.count(),
+                histogram.percentileNanos(50) / 1e3,
+                histogram.percentileNanos(99) / 1e3,
+                histogram.percentileNanos(99.9) / 1e3,
+                histogram.maxNanos() / 1e3);
+    }
+
+    /**
+     * Returns the share of the CPU time of all cores used by this process, from 0 to 1,
+     * or 0 if it is not known.
+     */
+    private static double processCpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return Math.max(0, ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.games.blocks.server;
+
+import com.example.games.blocks.model.FrameSnapshot;
+import com.example.games.blocks.model.Game;
+import com.example.games.blocks.model.GravityCurve;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One remote player: a game played on its own tick deadlines, and the connection it is
+ * played over.
+ *
+ * <p> The ticks run on the virtual thread of {@link #run()}, which parks until the next
+ * deadline, and the commands of the player are read on a second virtual thread. A parked
+ * virtual thread takes no carrier thread, so a server holds as many sessions as it has
+ * memory and CPU time for, not as many as it has threads.
+ * <p> The game is not played in real time, so it starts no threads of its own. Its
+ * synchronized methods are only held for a tick or a command, and the output is guarded by
+ * a {@link ReentrantLock}, which does not pin the virtual thread to its carrier while it
+ * waits for a slow client.
+ */
+final class Session implements Runnable {
+
+    // Falling this far behind the deadlines restarts them from now instead of catching up.
+    private static final long MAX_LATE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Socket socket;
+    private final ServerStats stats;
+    private final Game game = new Game();
+    private final FrameSnapshot frame = new FrameSnapshot();
+    private final DataInputStream input;
+    private final DataOutputStream output;
+    private final ReentrantLock outputLock = new ReentrantLock();
+
+    // Rows of settled blocks as last sent to the client, null until the first state.
+    private byte[][] sentCells;
+
+    private volatile Thread ticker;
+    private volatile boolean isClosed;
+    private volatile boolean isNewGame;
+    private volatile boolean isStateChanged;
+
+    Session(Socket socket, ServerStats stats, GravityCurve gravityCurve) throws IOException {
+        this.socket = socket;
+        this.stats = stats;
+        socket.setTcpNoDelay(true);
+        input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        game.setRealTime(false);
+        game.setShowNextFigure(false);
+        game.setShowHint(false);
+        game.setShowGhost(false);
+        game.setGravityCurve(gravityCurve);
+    }
+
+    /**
+     * Runs the ticks of the session until the client quits or the connection breaks.
+     */
+    @Override
+    public void run() {
+        ticker = Thread.currentThread();
+        stats.sessionOpened();
+        try {
+            GameServer.startThread("session-reader", this::readCommands);
+            long deadline = 0;
+            boolean isPlaying = false;
+            while (!isClosed) {
+                if (isNewGame) {
+                    isNewGame = false;
+                    isPlaying = true;
+                    sendState(true);
+                    deadline = System.nanoTime() + game.getTickPeriodNanos();
+                }
+                if (!game.isInGame()) {
+                    // The game can also end on a drop of the player, between ticks.
+                    if (isPlaying) {
+                        isPlaying = false;
+                        sendGameOver();
+                    }
+                    // Nothing to tick until the client starts a game.
+                    LockSupport.park(this);
+                    continue;
+                }
+                long now = System.nanoTime();
+                if (now < deadline) {
+                    if (isStateChanged) {
+                        isStateChanged = false;
+                        sendState(false);
+                    }
+                    LockSupport.parkNanos(this, deadline - now);
+                    continue;
+                }
+                long lateNanos = now - deadline;
+                game.advanceTick();
+                isStateChanged = false;
+                if (game.isInGame()) {
+                    sendState(false);
+                } else {
+                    isPlaying = false;
+                    sendGameOver();
+                }
+                stats.tick(lateNanos, System.nanoTime() - now);
+                deadline = lateNanos > MAX_LATE_NANOS
+                        ? now + game.getTickPeriodNanos()
+                        : deadline + game.getTickPeriodNanos();
+            }
+        } catch (IOException e) {
+            // The client is gone.
+        } finally {
+            close();
+            stats.sessionClosed();
+        }
+    }
+
+    private void readCommands() {
+        try {
+            while (!isClosed) {
+                int message = input.readUnsignedByte();
+                switch (message) {
+                    case Protocol.MSG_START:
+                        startGame(input.readLong(), input.readUnsignedByte(),
+                                input.readUnsignedShort(), input.readUnsignedShort());
+                        break;
+                    case Protocol.MSG_COMMAND:
+                        command(input.readUnsignedByte());
+                        break;
+                    case Protocol.MSG_QUIT:
+                        isClosed = true;
+                        break;
+                    default:
+                        throw new IOException("Unknown message " + message);
+                }
+                LockSupport.unpark(ticker);
+            }
+        } catch (EOFException e) {
+            // The client has closed the connection.
+        } catch (IOException | IllegalArgumentException e) {
+            // The client is gone or has sent a broken message.
+        } finally {
+            isClosed = true;
+            LockSupport.unpark(ticker);
+        }
+    }
+
+    private void startGame(long seed, int level, int width, int height) {
+        Game.checkFieldSize(width, height);
+        if (width > Protocol.MAX_FIELD_SIZE || height > Protocol.MAX_FIELD_SIZE) {
+            throw new IllegalArgumentException("Field size " + width + "x" + height + " is too big");
+        }
+        synchronized (game) {
+            game.setSeed(seed);
+            game.setStartingLevel(Math.min(Math.max(level, 0), Protocol.MAX_LEVEL));
+            game.setFieldSize(width, height);
+            game.newGame();
+        }
+        isNewGame = true;
+    }
+
+    private void command(int command) throws IOException {
+        switch (command) {
+            case Game.CMD_LEFT:
+                game.left();
+                break;
+            case Game.CMD_ROTATE:
+                game.rotate();
+                break;
+            case Game.CMD_RIGHT:
+                game.right();
+                break;
+            case Game.CMD_DROP:
+                game.drop();
+                break;
+            default:
+                throw new IOException("Unknown command " + command);
+        }
+        isStateChanged = true;
+    }
+
+    /**
+     * Sends the score, the current figure and the rows that changed since the previous state.
+     *
+     * @param isAllRows whether to send all rows, e.g. for a new game.
+     */
+    private void sendState(boolean isAllRows) throws IOException {
+        int tick;
+        int score;
+        int lines;
+        int figures;
+        int level;
+        synchronized (game) {
+            game.captureFrame(frame);
+            tick = game.getTickCount();
+            score = game.getScore();
+            lines = game.getLinesCount();
+            figures = game.getFiguresCount();
+            level = game.getLevel();
+        }
+        int width = frame.fieldWidth();
+        int height = frame.fieldHeight();
+        if (isAllRows || sentCells == null
+                || sentCells.length != height + 1 || sentCells[1].length != width) {
+            sentCells = new byte[height + 1][width];
+            isAllRows = true;
+        }
+        outputLock.lock();
+        try {
+            output.writeByte(Protocol.MSG_STATE);
+            output.writeInt(tick);
+            output.writeInt(score);
+            output.writeInt(lines);
+            output.writeInt(figures);
+            output.writeByte(level);
+            int figureType = frame.figureType();
+            output.writeByte(figureType);
+            if (figureType != 0) {
+                for (int i = 0; i < 4; i++) {
+                    output.writeShort(frame.figureX(i));
+                    output.writeShort(frame.figureY(i));
+                }
+            }
+            int changedRows = 0;
+            for (int y = 1; y <= height; y++) {
+                if (isAllRows || isRowChanged(y)) {
+                    changedRows++;
+                }
+            }
+            output.writeShort(changedRows);
+            for (int y = 1; y <= height; y++) {
+                if (isAllRows || isRowChanged(y)) {
+                    byte[] row = sentCells[y];
+                    for (int x = 1; x <= width; x++) {
+                        row[x - 1] = (byte) frame.cell(x, y);
+                    }
+                    output.writeShort(y);
+                    output.write(row);
+                }
+            }
+            output.flush();
+        } finally {
+            outputLock.unlock();
+        }
+        stats.messageSent();
+    }
+
+    private boolean isRowChanged(int y) {
+        byte[] row = sentCells[y];
+        for (int x = 1; x <= row.length; x++) {
+            if (row[x - 1] != frame.cell(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sendGameOver() throws IOException {
+        outputLock.lock();
+        try {
+            output.writeByte(Protocol.MSG_GAME_OVER);
+            output.writeInt(game.getTickCount());
+            output.writeInt(game.getScore());
+            output.writeInt(game.getLinesCount());
+            output.writeInt(game.getFiguresCount());
+            output.flush();
+        } finally {
+            outputLock.unlock();
+        }
+        stats.messageSent();
+    }
+
+    void close() {
+        isClosed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed.
+        }
+        Thread ticker = this.ticker;
+        if (ticker != null) {
+            LockSupport.unpark(ticker);
+        }
+    }
+}
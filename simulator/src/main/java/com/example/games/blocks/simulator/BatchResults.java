@@ -0,0 +1,112 @@
+package com.example.games.blocks.simulator;
+
+import com.example.games.blocks.model.Game;
+import com.example.games.blocks.model.GravityCurve;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Final state of every game of a batch, and the report on them.
+ *
+ * <p> Each game writes only its own slots, so games can record their results in parallel
+ * without locking.
+ */
+class BatchResults {
+
+    // Percentiles of the score distribution to report.
+    private static final int[] PERCENTILES = {1, 10, 25, 50, 75, 90, 99};
+
+    // Highest level a game can reach on any gravity curve.
+    private static final int MAX_LEVEL = GravityCurve.MAX_LEVEL_COUNT - 1;
+
+    private final int[] scores;
+    private final int[] lines;
+    private final int[] levels;
+    private final int[] figures;
+    private final boolean[] isStopped;
+
+    BatchResults(int gamesCount) {
+        scores = new int[gamesCount];
+        lines = new int[gamesCount];
+        levels = new int[gamesCount];
+        figures = new int[gamesCount];
+        isStopped = new boolean[gamesCount];
+    }
+
+    /**
+     * Records the state of a finished game.
+     *
+     * @param isStopped true if the game was stopped before it was over.
+     */
+    void record(int game, Game finished, boolean isStopped) {
+        scores[game] = finished.getScore();
+        lines[game] = finished.getLinesCount();
+        levels[game] = finished.getLevel();
+        figures[game] = finished.getFiguresCount();
+        this.isStopped[game] = isStopped;
+    }
+
+    void report(PrintStream out, long elapsedNanos, int threadsCount) {
+        int count = scores.length;
+        double seconds = elapsedNanos / 1e9;
+        long totalFigures = sum(figures);
+
+        out.printf("Games:   %,d in %.2f s on %d threads, %,.0f games/s, %,.0f figures/s%n",
+                count, seconds, threadsCount, count / seconds, totalFigures / seconds);
+
+        int[] sortedScores = scores.clone();
+        Arrays.sort(sortedScores);
+        out.printf("Score:   mean %,.0f, min %,d, max %,d%n",
+                (double) sum(scores) / count, sortedScores[0], sortedScores[count - 1]);
+        StringBuilder percentiles = new StringBuilder("        ");
+        for (int p : PERCENTILES) {
+            percentiles.append(String.format(" p%d %,d", p, percentile(sortedScores, p)));
+        }
+        out.println(percentiles);
+
+        int[] sortedLines = lines.clone();
+        Arrays.sort(sortedLines);
+        out.printf("Lines:   mean %,.1f per game, median %,d, max %,d%n",
+                (double) sum(lines) / count, percentile(sortedLines, 50), sortedLines[count - 1]);
+        out.printf("Figures: mean %,.1f per game%n", (double) totalFigures / count);
+
+        int[] levelCounts = new int[MAX_LEVEL + 2];
+        for (int level : levels) {
+            levelCounts[Math.min(level, MAX_LEVEL + 1)]++;
+        }
+        out.println("Level reached:");
+        for (int level = 0; level < levelCounts.length; level++) {
+            if (levelCounts[level] > 0) {
+                out.printf("  %2d: %,d (%.1f%%)%n",
+                        level, levelCounts[level], 100.0 * levelCounts[level] / count);
+            }
+        }
+
+        int stoppedCount = 0;
+        for (boolean stopped : isStopped) {
+            if (stopped) {
+                stoppedCount++;
+            }
+        }
+        if (stoppedCount > 0) {
+            out.printf("Stopped at the figures limit before game over: %,d games%n", stoppedCount);
+        }
+    }
+
+    private static long sum(int[] values) {
+        long sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns a percentile of sorted values, by the nearest rank.
+     */
+    private static int percentile(int[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.games.blocks.simulator;
+
+import com.example.games.blocks.model.FastRandom;
+import com.example.games.blocks.model.Game;
+
+/**
+ * Ways to play the simulated games.
+ */
+enum Player {
+
+    /**
+     * The Game autoplay, i.e. the heuristic AutoPlayer.
+     */
+    AUTO {
+        @Override
+        void prepare(Game game) {
+            game.setAutoPlay(true);
+        }
+
+        @Override
+        void playFigure(Game game, FastRandom random) {
+            game.runUntilLock();
+        }
+    },
+
+    /**
+     * Drops every figure right where it appears.
+     */
+    DROP {
+        @Override
+        void beforeTick(Game game, FastRandom random) {
+            game.drop();
+        }
+    },
+
+    /**
+     * Plays a random command on every tick, with drops as often as each of the moves.
+     */
+    RANDOM {
+        @Override
+        void beforeTick(Game game, FastRandom random) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    game.left();
+                    break;
+                case 1:
+                    game.rotate();
+                    break;
+                case 2:
+                    game.right();
+                    break;
+                default:
+                    game.drop();
+                    break;
+            }
+        }
+    };
+
+    /**
+     * Sets up a game before it starts.
+     */
+    void prepare(Game game) {
+    }
+
+    /**
+     * Plays on a game before each of its ticks, nothing by default.
+     *
+     * @param random the random generator of this game, seeded with the game seed.
+     */
+    void beforeTick(Game game, FastRandom random) {
+    }
+
+    /**
+     * Plays on a game until its current figure is locked into the field, or the game is over.
+     *
+     * @param random the random generator of this game, seeded with the game seed.
+     */
+    void playFigure(Game game, FastRandom random) {
+        int figuresCount = game.getFiguresCount();
+        while (game.isInGame() && game.getFiguresCount() == figuresCount) {
+            beforeTick(game, random);
+            game.advanceTick();
+        }
+    }
+}
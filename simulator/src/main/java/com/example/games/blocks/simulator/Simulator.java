@@ -0,0 +1,259 @@
+package com.example.games.blocks.simulator;
+
+import com.example.games.blocks.model.AutoPlayer;
+import com.example.games.blocks.model.BagRandomizer;
+import com.example.games.blocks.model.FastRandom;
+import com.example.games.blocks.model.FigureRandomizer;
+import com.example.games.blocks.model.Game;
+import com.example.games.blocks.model.GravityCurve;
+import com.example.games.blocks.model.HistoryRandomizer;
+import com.example.games.blocks.model.ReplayArchive;
+import com.example.games.blocks.model.ReplayPlayer;
+import com.example.games.blocks.model.ReplayReader;
+import com.example.games.blocks.model.UniformRandomizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Command line batch runner: plays many independent seeded games as fast as possible, e.g. to
+ * balance levels and scoring, and reports the results.
+ *
+ * <p> Games are played without the Game loop thread and without rendering, one tick after
+ * another. They share nothing, and run as tasks of one {@link ForkJoinPool} sized to the
+ * number of threads, which the AutoPlayer searches of the games use as well.
+ *
+ * <p> Game i of a batch is seeded with seed + i, so a batch with the same options always has
+ * the same results, whatever the number of threads.
+ *
+ * <p> Options, all optional: --games=N --threads=N --seed=N --level=N --player=auto|drop|random
+ * --lookahead=N --randomizer=uniform|bag|history --show-next --max-figures=N --width=N --height=N
+ * --gravity=classic|standard --record=FILE to append the replays of the games to an archive
+ * file, or --replay=FILE to play back all replays of an archive instead, reporting their results
+ * the same way.
+ */
+public class Simulator {
+
+    private int gamesCount = 10_000;
+    private int threadsCount = Runtime.getRuntime().availableProcessors();
+    private long seed = 1;
+    private int startingLevel = 4;
+    private Player player = Player.AUTO;
+    private int lookahead = 0;
+    private String randomizer = "uniform";
+    private boolean isShowNextFigure = false;
+    private int maxFigures = 2_000;
+    private int fieldWidth = Game.DEFAULT_FIELD_WIDTH;
+    private int fieldHeight = Game.DEFAULT_FIELD_HEIGHT;
+    private GravityCurve gravityCurve = GravityCurve.CLASSIC;
+    private File recordArchive;
+    private File replayArchive;
+
+    private ForkJoinPool pool;
+    private BatchResults results;
+    private byte[][] replays;
+
+    public static void main(String[] args) {
+        Simulator simulator = new Simulator();
+        try {
+            simulator.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+        try {
+            if (simulator.replayArchive != null) {
+                simulator.replay();
+            } else {
+                simulator.run();
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void parse(String[] args) {
+        for (String arg : args) {
+            String name = arg;
+            String value = "";
+            int equals = arg.indexOf('=');
+            if (equals >= 0) {
+                name = arg.substring(0, equals);
+                value = arg.substring(equals + 1);
+            }
+            switch (name) {
+                case "--games":
+                    gamesCount = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    threadsCount = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--level":
+                    startingLevel = Integer.parseInt(value);
+                    break;
+                case "--player":
+                    player = Player.valueOf(value.toUpperCase());
+                    break;
+                case "--lookahead":
+                    lookahead = Integer.parseInt(value);
+                    break;
+                case "--randomizer":
+                    randomizer = value;
+                    newRandomizer();
+                    break;
+                case "--show-next":
+                    isShowNextFigure = true;
+                    break;
+                case "--max-figures":
+                    maxFigures = Integer.parseInt(value);
+                    break;
+                case "--width":
+                    fieldWidth = Integer.parseInt(value);
+                    break;
+                case "--height":
+                    fieldHeight = Integer.parseInt(value);
+                    break;
+                case "--gravity":
+                    gravityCurve = GravityCurve.forName(value);
+                    break;
+                case "--record":
+                    recordArchive = new File(value);
+                    break;
+                case "--replay":
+                    replayArchive = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (gamesCount < 1 || threadsCount < 1) {
+            throw new IllegalArgumentException("Need at least one game and one thread");
+        }
+        Game.checkFieldSize(fieldWidth, fieldHeight);
+    }
+
+    private void run() throws IOException {
+        System.out.printf("Playing %,d games: player %s, lookahead %d, level %d, randomizer %s,"
+                        + " show next %b, field %dx%d, seed %d%n",
+                gamesCount, player, lookahead, startingLevel, randomizer, isShowNextFigure,
+                fieldWidth, fieldHeight, seed);
+
+        pool = new ForkJoinPool(threadsCount);
+        results = new BatchResults(gamesCount);
+        if (recordArchive != null) {
+            replays = new byte[gamesCount][];
+        }
+        long start = System.nanoTime();
+        pool.invoke(new BatchTask(0, gamesCount));
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        results.report(System.out, elapsedNanos, threadsCount);
+
+        if (recordArchive != null) {
+            for (byte[] replay : replays) {
+                ReplayArchive.append(recordArchive, replay);
+            }
+            System.out.printf("Recorded %,d replays to %s%n", gamesCount, recordArchive);
+        }
+    }
+
+    /**
+     * Plays back all replays of an archive, one after another on this thread.
+     */
+    private void replay() throws IOException {
+        try (ReplayArchive archive = ReplayArchive.open(replayArchive)) {
+            ReplayReader reader = new ReplayReader();
+            int count = 0;
+            while (archive.next(reader)) {
+                count++;
+            }
+            System.out.printf("Replaying %,d games from %s%n", count, replayArchive);
+
+            results = new BatchResults(count);
+            archive.rewind();
+            long start = System.nanoTime();
+            for (int i = 0; archive.next(reader); i++) {
+                Game game = new Game();
+                ReplayPlayer.play(reader, game);
+                results.record(i, game, game.isInGame());
+            }
+            results.report(System.out, System.nanoTime() - start, 1);
+        }
+    }
+
+    /**
+     * Plays one game to the end, or until maxFigures figures are played.
+     */
+    private void playGame(int index) {
+        long gameSeed = seed + index;
+
+        Game game = new Game();
+        game.setRealTime(false);
+        game.setSeed(gameSeed);
+        game.setStartingLevel(startingLevel);
+        game.setFigureRandomizer(newRandomizer());
+        game.setShowNextFigure(isShowNextFigure);
+        game.setFieldSize(fieldWidth, fieldHeight);
+        game.setGravityCurve(gravityCurve);
+        AutoPlayer autoPlayer = new AutoPlayer(pool);
+        autoPlayer.setLookahead(lookahead);
+        autoPlayer.setTimeBudgetMillis(0);
+        game.setAutoPlayer(autoPlayer);
+        player.prepare(game);
+
+        FastRandom random = new FastRandom(gameSeed);
+        game.newGame();
+        while (game.isInGame() && game.getFiguresCount() < maxFigures) {
+            player.playFigure(game, random);
+        }
+        results.record(index, game, game.isInGame());
+        if (replays != null) {
+            replays[index] = game.getReplay();
+        }
+    }
+
+    private FigureRandomizer newRandomizer() {
+        switch (randomizer) {
+            case "uniform":
+                return new UniformRandomizer();
+            case "bag":
+                return new BagRandomizer();
+            case "history":
+                return new HistoryRandomizer();
+            default:
+                throw new IllegalArgumentException("Unknown randomizer " + randomizer);
+        }
+    }
+
+    /**
+     * Plays a range of games, splitting it in halves down to single games.
+     */
+    private class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        BatchTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BatchTask(from, middle), new BatchTask(middle, to));
+                return;
+            }
+            playGame(from);
+        }
+    }
+}